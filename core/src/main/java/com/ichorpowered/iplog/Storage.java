@@ -0,0 +1,1954 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ichorpowered.iplog.api.ConnectionChange;
+import com.ichorpowered.iplog.session.Playtime;
+import com.ichorpowered.iplog.session.Session;
+import com.ichorpowered.iplog.storage.CircuitBreaker;
+import com.ichorpowered.iplog.storage.Compaction;
+import com.ichorpowered.iplog.storage.ConnectionListener;
+import com.ichorpowered.iplog.storage.FileStats;
+import com.ichorpowered.iplog.storage.JournalEntry;
+import com.ichorpowered.iplog.storage.Lane;
+import com.ichorpowered.iplog.storage.Login;
+import com.ichorpowered.iplog.storage.Shard;
+import com.ichorpowered.iplog.storage.SpillJournal;
+import com.ichorpowered.iplog.storage.StoreFile;
+import com.ichorpowered.iplog.stream.ChangeStream;
+import org.slf4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.sql.DataSource;
+
+public class Storage {
+
+    private static final String DUPLICATE_KEY = "23505";
+    private static final String CANCELLED = "57014";
+    private static final int PAGE_SIZE = 1000;
+    private static final HashFunction SHARD_HASH = Hashing.murmur3_32();
+
+    private static final String REGISTRY_TABLE = "CREATE TABLE IF NOT EXISTS REGISTRY("
+        + " IP VARCHAR(45),"
+        + " ID CHAR(36),"
+        + " INSTANT DATETIME,"
+        + " SEQ BIGINT,"
+        + " PRIMARY KEY(IP, ID))";
+
+    private static final String DAILY_SESSIONS_TABLE = "CREATE TABLE IF NOT EXISTS DAILY_SESSIONS("
+        + " DAY DATE,"
+        + " ID CHAR(36),"
+        + " IP VARCHAR(45),"
+        + " SESSIONS INT NOT NULL,"
+        + " DURATION BIGINT NOT NULL,"
+        + " PRIMARY KEY(ID, IP, DAY))";
+
+    private static final String LOGINS_TABLE = "CREATE TABLE IF NOT EXISTS LOGINS("
+        + " BUCKET INT,"
+        + " IP VARCHAR(45),"
+        + " ID CHAR(36),"
+        + " FIRST DATETIME NOT NULL,"
+        + " LAST DATETIME NOT NULL,"
+        + " PRIMARY KEY(BUCKET, IP, ID))";
+
+    private static final String NAMES_TABLE = "CREATE TABLE IF NOT EXISTS NAMES("
+        + " ID CHAR(36),"
+        + " NAME VARCHAR(16),"
+        + " FIRST DATETIME NOT NULL,"
+        + " PRIMARY KEY(ID, NAME))";
+
+    // Every table keyed by address, with its columns and primary key, which move between shards together.
+    private static final String[][] SHARDED_TABLES = {
+        {"REGISTRY", "IP, ID, INSTANT, SEQ", "IP, ID"},
+        {"PURGED", "SEQ, IP, ID", "SEQ"},
+        {"FANOUT", "IP, ACCOUNTS", "IP"},
+        {"LOGINS", "BUCKET, IP, ID, FIRST, LAST", "BUCKET, IP, ID"},
+        {"DAILY_SESSIONS", "DAY, ID, IP, SESSIONS, DURATION", "ID, IP, DAY"}
+    };
+
+    private final List<Shard> shards;
+    private final ExecutorService fanout;
+    private final Logger logger;
+    private final CircuitBreaker breaker;
+    private final SpillJournal journal;
+    private final ChangeStream changes;
+    private final StoreFile storeFile = StoreFile.load();
+
+    private final List<ConnectionListener> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong conflicts = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong writesStarted = new AtomicLong();
+    private final ConcurrentSkipListSet<Long> writesInFlight = new ConcurrentSkipListSet<>();
+
+    // Replays must not overlap, or both would commit the same batch and drop the next one unreplayed.
+    private final Object replayLock = new Object();
+
+    private volatile Queue<JournalEntry> capture;
+
+    public Storage(DataSource dataSource, Logger logger, CircuitBreaker breaker, SpillJournal journal) throws SQLException {
+        this(new Lane(dataSource, 4, 5, 0, TimeUnit.SECONDS), new Lane(dataSource, 2, 5, 0, TimeUnit.SECONDS), logger, breaker, journal);
+    }
+
+    /**
+     * Creates storage that keeps writes and reads on separate lanes, so that
+     * long lookups can only ever hold the read lane's connections.
+     */
+    public Storage(Lane writes, Lane reads, Logger logger, CircuitBreaker breaker, SpillJournal journal) throws SQLException {
+        this(Collections.singletonList(new Shard(writes, reads)), Collections.emptyList(), logger, breaker, journal);
+    }
+
+    /**
+     * Creates storage split across the shards by the hash of each address.
+     * Lookups of an address go to its shard, and lookups of a player go to
+     * every shard at once. Rows on the wrong shard since the number of shards
+     * changed, and every row of the retired shards, are moved first.
+     */
+    public Storage(List<Shard> shards, List<Shard> retired, Logger logger, CircuitBreaker breaker, SpillJournal journal) throws SQLException {
+        this.shards = Collections.unmodifiableList(new ArrayList<>(shards));
+        this.logger = logger;
+        this.breaker = breaker;
+        this.journal = journal;
+        this.changes = new ChangeStream(logger);
+
+        final List<Shard> all = new ArrayList<>(shards);
+        all.addAll(retired);
+
+        for (Shard shard : all) {
+            createTables(shard);
+        }
+
+        rebalance(all);
+
+        for (Shard shard : this.shards) {
+            this.sequence.set(Math.max(this.sequence.get(), lastSequence(shard)));
+        }
+
+        this.fanout = shards.size() == 1 ? null : Executors.newFixedThreadPool(Math.min(shards.size(), Runtime.getRuntime().availableProcessors()),
+            new ThreadFactoryBuilder().setNameFormat("IPLog Storage Fan-out %d").setDaemon(true).build());
+    }
+
+    private void createTables(Shard shard) throws SQLException {
+        try (Connection conn = shard.getWriteLane().getConnection()) {
+            conn.prepareStatement(REGISTRY_TABLE).execute();
+
+            conn.prepareStatement("CREATE INDEX IF NOT EXISTS REGISTRY_ID ON REGISTRY(ID)").execute();
+
+            // New connections and purges are numbered so that the address index can catch up from a snapshot.
+            conn.prepareStatement("CREATE SEQUENCE IF NOT EXISTS REGISTRY_SEQ").execute();
+            conn.prepareStatement("ALTER TABLE REGISTRY ADD COLUMN IF NOT EXISTS SEQ BIGINT").execute();
+            conn.prepareStatement("CREATE INDEX IF NOT EXISTS REGISTRY_CHANGES ON REGISTRY(SEQ)").execute();
+
+            conn.prepareStatement("CREATE TABLE IF NOT EXISTS PURGED("
+                + " SEQ BIGINT PRIMARY KEY,"
+                + " IP VARCHAR(45),"
+                + " ID CHAR(36))").execute();
+
+            conn.prepareStatement("CREATE TABLE IF NOT EXISTS FANOUT("
+                + " IP VARCHAR(45) PRIMARY KEY,"
+                + " ACCOUNTS INT NOT NULL)").execute();
+
+            conn.prepareStatement(DAILY_SESSIONS_TABLE).execute();
+
+            conn.prepareStatement("CREATE INDEX IF NOT EXISTS DAILY_SESSIONS_IP ON DAILY_SESSIONS(IP, DAY)").execute();
+
+            // Logins are bucketed by hour so that time window queries only read the buckets they cover.
+            conn.prepareStatement(LOGINS_TABLE).execute();
+
+            conn.prepareStatement("CREATE INDEX IF NOT EXISTS LOGINS_IP ON LOGINS(IP, BUCKET)").execute();
+            conn.prepareStatement("CREATE INDEX IF NOT EXISTS LOGINS_ID ON LOGINS(ID, BUCKET)").execute();
+
+            conn.prepareStatement(NAMES_TABLE).execute();
+
+            conn.prepareStatement("CREATE TABLE IF NOT EXISTS LAYOUT(SHARDS INT NOT NULL)").execute();
+
+            // Older databases have no counters yet, so derive them once from the registry.
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM FANOUT LIMIT 1")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.prepareStatement("INSERT INTO FANOUT(IP, ACCOUNTS) SELECT IP, COUNT(*) FROM REGISTRY GROUP BY IP").execute();
+                    }
+                }
+            }
+
+            // Only the last login of each connection is known from before logins were bucketed.
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM LOGINS LIMIT 1")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (!rs.next()) {
+                        conn.prepareStatement("INSERT INTO LOGINS(BUCKET, IP, ID, FIRST, LAST)"
+                            + " SELECT DATEDIFF('HOUR', TIMESTAMP '1970-01-01 00:00:00', INSTANT), IP, ID, INSTANT, INSTANT FROM REGISTRY").execute();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Moves every row of the sharded tables that is not on its address's
+     * shard, if the shards have changed since storage was last opened. A row
+     * is only removed once its copy is committed, so an interrupted move is
+     * simply finished on the next start.
+     */
+    private void rebalance(List<Shard> all) throws SQLException {
+        final int count = this.shards.size();
+        int previous = 1;
+
+        try (Connection conn = this.shards.get(0).getWriteLane().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT SHARDS FROM LAYOUT")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    if (rs.next()) {
+                        previous = rs.getInt(1);
+                    }
+                }
+            }
+
+            if (previous == count && all.size() == count) {
+                return;
+            }
+
+            for (int source = 0; source < all.size(); source++) {
+                for (String[] table : SHARDED_TABLES) {
+                    moveRows(all, source, table[0], table[1], table[2]);
+                }
+            }
+
+            conn.prepareStatement("DELETE FROM LAYOUT").execute();
+
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO LAYOUT(SHARDS) VALUES (?)")) {
+                ps.setInt(1, count);
+                ps.execute();
+            }
+        }
+
+        if (all.size() > count) {
+            this.logger.info("Storage shards " + count + " to " + (all.size() - 1) + " are now empty and their files can be deleted.");
+        }
+    }
+
+    private void moveRows(List<Shard> all, int source, String table, String columns, String keys) throws SQLException {
+        final int width = columns.split(", ").length;
+        final int ip = Arrays.asList(columns.split(", ")).indexOf("IP");
+        long last = Long.MIN_VALUE;
+        long moved = 0;
+
+        try (Connection from = all.get(source).getWriteLane().getConnection()) {
+            while (true) {
+                final Map<Integer, List<Object[]>> targets = new HashMap<>();
+                final List<Long> rows = new ArrayList<>();
+                int read = 0;
+
+                try (PreparedStatement ps = from.prepareStatement("SELECT _ROWID_, " + columns + " FROM " + table
+                    + " WHERE _ROWID_ > ? ORDER BY _ROWID_ LIMIT ?")) {
+                    ps.setLong(1, last);
+                    ps.setInt(2, PAGE_SIZE);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            read++;
+                            last = rs.getLong(1);
+
+                            final int target = shardOf(rs.getString(ip + 2));
+
+                            if (target != source) {
+                                final Object[] row = new Object[width];
+
+                                for (int i = 0; i < width; i++) {
+                                    row[i] = rs.getObject(i + 2);
+                                }
+
+                                targets.computeIfAbsent(target, key -> new ArrayList<>()).add(row);
+                                rows.add(last);
+                            }
+                        }
+                    }
+                }
+
+                for (Map.Entry<Integer, List<Object[]>> target : targets.entrySet()) {
+                    try (Connection to = all.get(target.getKey()).getWriteLane().getConnection()) {
+                        transaction(to, c -> {
+                            try (PreparedStatement ps = c.prepareStatement("MERGE INTO " + table + "(" + columns + ") KEY(" + keys + ") VALUES ("
+                                + String.join(", ", Collections.nCopies(width, "?")) + ")")) {
+                                for (Object[] row : target.getValue()) {
+                                    for (int i = 0; i < width; i++) {
+                                        ps.setObject(i + 1, row[i]);
+                                    }
+
+                                    ps.addBatch();
+                                }
+
+                                ps.executeBatch();
+                            }
+
+                            return true;
+                        });
+                    }
+                }
+
+                if (!rows.isEmpty()) {
+                    transaction(from, c -> {
+                        try (PreparedStatement ps = c.prepareStatement("DELETE FROM " + table + " WHERE _ROWID_ = ?")) {
+                            for (long row : rows) {
+                                ps.setLong(1, row);
+                                ps.addBatch();
+                            }
+
+                            ps.executeBatch();
+                        }
+
+                        return true;
+                    });
+
+                    moved += rows.size();
+                }
+
+                if (read < PAGE_SIZE) {
+                    break;
+                }
+            }
+        }
+
+        if (moved > 0) {
+            this.logger.info("Moved " + moved + " rows of " + table + " off storage shard " + source + ".");
+        }
+    }
+
+    /**
+     * Gets the shard that holds every row of the address.
+     */
+    private int shardOf(String ip) {
+        final int count = this.shards.size();
+        return count == 1 ? 0 : Math.floorMod(SHARD_HASH.hashString(ip, StandardCharsets.UTF_8).asInt(), count);
+    }
+
+    /**
+     * Runs the function on the shard's write lane unless the circuit breaker
+     * is open. An empty result means storage was unavailable or the call
+     * failed.
+     */
+    private <T> Optional<T> execute(int shard, String error, SqlFunction<T> function) {
+        return execute(shard, error, true, function);
+    }
+
+    /**
+     * Runs the function on the shard's write lane unless the circuit breaker
+     * is open, only counting it as slow if {@code timed} is set. Full scans
+     * are expected to take a while and should not open the breaker.
+     */
+    private <T> Optional<T> execute(int shard, String error, boolean timed, SqlFunction<T> function) {
+        return execute(this.shards.get(shard).getWriteLane(), true, error, timed, function);
+    }
+
+    /**
+     * Runs the function on the shard's read lane, where it is cancelled if it
+     * takes longer than the lane's query timeout.
+     */
+    private <T> Optional<T> read(int shard, String error, SqlFunction<T> function) {
+        return execute(this.shards.get(shard).getReadLane(), false, error, true, function);
+    }
+
+    /**
+     * Runs the function on the shard's read lane without a query timeout, for
+     * scans that are expected to take a while.
+     */
+    private <T> Optional<T> scan(int shard, String error, SqlFunction<T> function) {
+        return execute(this.shards.get(shard).getReadLane(), false, error, false, function);
+    }
+
+    /**
+     * Runs the function on the read lane of every shard in parallel, and
+     * returns the results of the shards that answered.
+     */
+    private <T> List<T> readAll(String error, SqlFunction<T> function) {
+        if (this.fanout == null) {
+            return read(0, error, function).map(Collections::singletonList).orElseGet(Collections::emptyList);
+        }
+
+        final List<CompletableFuture<Optional<T>>> futures = new ArrayList<>(this.shards.size());
+
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            final int target = shard;
+            futures.add(CompletableFuture.supplyAsync(() -> read(target, error, function), this.fanout));
+        }
+
+        return futures.stream()
+            .map(CompletableFuture::join)
+            .filter(Optional::isPresent)
+            .map(Optional::get)
+            .collect(Collectors.toList());
+    }
+
+    private <T> Optional<T> execute(Lane lane, boolean write, String error, boolean timed, SqlFunction<T> function) {
+        if (!this.breaker.allowRequest()) {
+            return Optional.empty();
+        }
+
+        final long start = System.nanoTime();
+
+        if (!lane.acquire()) {
+            // A full write lane means joins are backing up, but a full read lane only means staff are busy.
+            if (write) {
+                this.failures.incrementAndGet();
+                this.breaker.recordFailure();
+            } else {
+                this.timeouts.incrementAndGet();
+                this.breaker.recordInconclusive();
+            }
+
+            this.logger.warn(error + " Storage was too busy.");
+
+            return Optional.empty();
+        }
+
+        try (Connection conn = lane.getConnection()) {
+            final long timeout = lane.getQueryTimeout(TimeUnit.MILLISECONDS);
+
+            if (timeout > 0) {
+                queryTimeout(conn, timed ? timeout : 0);
+            }
+
+            final T result = function.apply(conn);
+
+            // Reads are kept off the write lane, so only writes can open the breaker for being slow.
+            this.breaker.recordSuccess(timed && write ? System.nanoTime() - start : 0);
+
+            return Optional.ofNullable(result);
+        } catch (SQLException e) {
+            // A duplicate key means a concurrent write won a race, not that storage is unhealthy.
+            if (DUPLICATE_KEY.equals(e.getSQLState())) {
+                this.conflicts.incrementAndGet();
+                this.breaker.recordSuccess(System.nanoTime() - start);
+
+                return Optional.empty();
+            }
+
+            if (CANCELLED.equals(e.getSQLState())) {
+                this.timeouts.incrementAndGet();
+                this.breaker.recordInconclusive();
+
+                this.logger.warn(error + " It took longer than " + lane.getQueryTimeout(TimeUnit.MILLISECONDS) + "ms and was cancelled.");
+
+                return Optional.empty();
+            }
+
+            this.failures.incrementAndGet();
+            this.breaker.recordFailure();
+
+            this.logger.error(error);
+            e.printStackTrace();
+        } catch (RuntimeException e) {
+            // Every call must be recorded, or a failed probe would leave the breaker waiting on it forever.
+            this.failures.incrementAndGet();
+            this.breaker.recordFailure();
+
+            this.logger.error(error);
+            e.printStackTrace();
+        } finally {
+            lane.release();
+        }
+
+        return Optional.empty();
+    }
+
+    private static void queryTimeout(Connection conn, long millis) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SET QUERY_TIMEOUT ?")) {
+            ps.setLong(1, millis);
+            ps.execute();
+        }
+    }
+
+    private static <T> T transaction(Connection conn, SqlFunction<T> function) throws SQLException {
+        conn.setAutoCommit(false);
+
+        try {
+            final T result = function.apply(conn);
+
+            conn.commit();
+
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(true);
+        }
+    }
+
+    public void addListener(ConnectionListener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Gets the stream of changes to connections, published once each change
+     * is committed. Journaled writes are published when they are replayed.
+     */
+    public ChangeStream getChangeStream() {
+        return this.changes;
+    }
+
+    /**
+     * Writes directly to storage, or to the journal while storage is
+     * unavailable or older journaled writes are still waiting to be replayed.
+     * The function returns the change it made, if it made one.
+     */
+    private void write(JournalEntry entry, String error, SqlFunction<Optional<ConnectionChange.Type>> function) {
+        final Long ticket = this.writesStarted.incrementAndGet();
+        this.writesInFlight.add(ticket);
+
+        try {
+            final Optional<Optional<ConnectionChange.Type>> change = this.journal.isEmpty()
+                ? execute(shardOf(entry.getIp()), error, conn -> {
+                    try {
+                        return function.apply(conn);
+                    } catch (SQLException e) {
+                        // A concurrent write created the connection first, which leaves nothing to change or journal.
+                        if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                            throw e;
+                        }
+
+                        this.conflicts.incrementAndGet();
+
+                        return Optional.<ConnectionChange.Type>empty();
+                    }
+                }) : Optional.empty();
+
+            if (change.isPresent()) {
+                // Writes that change nothing reach neither the listeners nor the change stream.
+                if (!change.get().isPresent()) {
+                    return;
+                }
+
+                captured(entry);
+                publish(change.get().get(), entry);
+            } else {
+                try {
+                    this.journal.append(entry);
+                } catch (IOException e) {
+                    this.logger.error("Failed to journal a connection while storage is unavailable, so it has been lost.");
+                    e.printStackTrace();
+
+                    return;
+                }
+            }
+
+            for (ConnectionListener listener : this.listeners) {
+                notify(listener, entry);
+            }
+        } finally {
+            this.writesInFlight.remove(ticket);
+        }
+    }
+
+    private void publish(ConnectionChange.Type type, JournalEntry entry) {
+        this.changes.publish(type, entry.getIp(), entry.getUuid(), entry.getTime());
+    }
+
+    private static void notify(ConnectionListener listener, JournalEntry entry) {
+        if (entry.getType() == JournalEntry.Type.PURGE) {
+            listener.connectionPurged(entry.getIp(), entry.getUuid());
+        } else {
+            listener.connectionRecorded(entry.getIp(), entry.getUuid());
+        }
+    }
+
+    /**
+     * Streams every connection in storage to the listener, followed by the
+     * journaled writes that have not been replayed yet.
+     */
+    public boolean forEachConnection(ConnectionListener listener) {
+        return forEachConnection(listener, () -> false);
+    }
+
+    /**
+     * Streams every connection in storage to the listener, followed by the
+     * journaled writes that have not been replayed yet, unless cancelled.
+     */
+    public boolean forEachConnection(ConnectionListener listener, BooleanSupplier cancelled) {
+        boolean complete = true;
+
+        for (int shard = 0; shard < this.shards.size() && complete; shard++) {
+            complete = scan(shard, "Failed to read all connections from storage.", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT IP, ID FROM REGISTRY")) {
+                    ps.setFetchSize(1000);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            if (cancelled.getAsBoolean()) {
+                                return false;
+                            }
+
+                            listener.connectionRecorded(rs.getString(1), UUID.fromString(rs.getString(2)));
+                        }
+                    }
+                }
+
+                return true;
+            }).orElse(false);
+        }
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            notify(listener, entry);
+        }
+
+        return complete;
+    }
+
+    /**
+     * Streams every name each account has been seen with to the consumer,
+     * oldest first.
+     */
+    public boolean forEachName(BiConsumer<UUID, String> consumer) {
+        return scan(0, "Failed to read names from storage.", conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT ID, NAME FROM NAMES ORDER BY FIRST")) {
+                ps.setFetchSize(1000);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(UUID.fromString(rs.getString(1)), rs.getString(2));
+                    }
+                }
+            }
+
+            return true;
+        }).orElse(false);
+    }
+
+    public OptionalLong getConnectionCount() {
+        long count = 0;
+
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            final Optional<Long> rows = scan(shard, "Failed to count connections in storage.", conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM REGISTRY")) {
+                    try (ResultSet rs = ps.executeQuery()) {
+                        return rs.next() ? rs.getLong(1) : 0L;
+                    }
+                }
+            });
+
+            if (!rows.isPresent()) {
+                return OptionalLong.empty();
+            }
+
+            count += rows.get();
+        }
+
+        return OptionalLong.of(count);
+    }
+
+    /**
+     * Streams the connections recorded and purged after the sequence number
+     * to the listener, purges first, followed by the journaled writes that
+     * have not been replayed yet. A connection is always on the same shard,
+     * so its purges and records are in order even though shards are not.
+     */
+    public boolean forEachChange(long sequence, ConnectionListener listener) {
+        boolean complete = true;
+
+        for (int shard = 0; shard < this.shards.size() && complete; shard++) {
+            complete = forEachChange(shard, sequence, listener);
+        }
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            notify(listener, entry);
+        }
+
+        return complete;
+    }
+
+    private boolean forEachChange(int shard, long sequence, ConnectionListener listener) {
+        return scan(shard, "Failed to read recent connections from storage.", conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP, ID FROM PURGED WHERE SEQ > ? ORDER BY SEQ")) {
+                ps.setLong(1, sequence);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        listener.connectionPurged(rs.getString(1), UUID.fromString(rs.getString(2)));
+                    }
+                }
+            }
+
+            // The registry only holds live connections, so anything purged and recorded again is added back here.
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP, ID FROM REGISTRY WHERE SEQ > ?")) {
+                ps.setLong(1, sequence);
+                ps.setFetchSize(1000);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        listener.connectionRecorded(rs.getString(1), UUID.fromString(rs.getString(2)));
+                    }
+                }
+            }
+
+            return true;
+        }).isPresent();
+    }
+
+    /**
+     * Gets the last sequence number given to a new or purged connection.
+     */
+    public OptionalLong getSequence() {
+        return OptionalLong.of(this.sequence.get());
+    }
+
+    /**
+     * Gets the last sequence number given to a new or purged connection once
+     * every write that could have been given a number up to it has reached
+     * the listeners.
+     */
+    public OptionalLong getSequencePoint() {
+        final OptionalLong sequence = getSequence();
+
+        if (sequence.isPresent() && !awaitWrites()) {
+            return OptionalLong.empty();
+        }
+
+        return sequence;
+    }
+
+    /**
+     * Waits until every write started so far has finished. False if the
+     * thread was interrupted first.
+     */
+    private boolean awaitWrites() {
+        final long started = this.writesStarted.get();
+
+        Long oldest;
+
+        while ((oldest = this.writesInFlight.ceiling(Long.MIN_VALUE)) != null && oldest <= started) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Forgets purges up to the sequence number once a snapshot covers them.
+     * The last purge of each shard is kept, so the numbering carries on past
+     * it after a restart.
+     */
+    public void prunePurged(long sequence) {
+        for (int shard = 0; shard < this.shards.size(); shard++) {
+            execute(shard, "Failed to prune purged connections.", false, conn -> {
+                try (PreparedStatement ps = conn.prepareStatement("DELETE FROM PURGED WHERE SEQ <= ? AND SEQ < (SELECT MAX(SEQ) FROM PURGED)")) {
+                    ps.setLong(1, sequence);
+
+                    return ps.executeUpdate();
+                }
+            });
+        }
+    }
+
+    /**
+     * Replays journaled writes in batches until the journal is empty or
+     * storage fails again. Each shard's part of a batch is its own
+     * transaction, and replaying a write twice changes nothing, so a batch
+     * that only partly made it is simply replayed again.
+     */
+    public void replayJournal(int batchSize) {
+        synchronized (this.replayLock) {
+            while (!this.journal.isEmpty()) {
+                final List<JournalEntry> batch = this.journal.peek(batchSize);
+                final Map<Integer, List<JournalEntry>> byShard = batch.stream().collect(Collectors.groupingBy(entry -> shardOf(entry.getIp())));
+
+                for (Map.Entry<Integer, List<JournalEntry>> part : byShard.entrySet()) {
+                    if (!replay(part.getKey(), part.getValue())) {
+                        return;
+                    }
+                }
+
+                batch.forEach(this::captured);
+
+                try {
+                    this.journal.commit(batch.size());
+                } catch (IOException e) {
+                    this.logger.error("Failed to remove replayed connections from the journal.");
+                    e.printStackTrace();
+
+                    return;
+                }
+
+                this.logger.info("Replayed " + batch.size() + " journaled connections.");
+            }
+        }
+    }
+
+    private boolean replay(int shard, List<JournalEntry> batch) {
+        final Optional<ConnectionChange.Type[]> changes = execute(shard, "Failed to replay journaled connections.", conn -> transaction(conn, c -> {
+            final ConnectionChange.Type[] types = new ConnectionChange.Type[batch.size()];
+
+            for (int i = 0; i < batch.size(); i++) {
+                final JournalEntry entry = batch.get(i);
+
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    types[i] = delete(c, entry.getIp(), entry.getUuid()) ? ConnectionChange.Type.PURGED : null;
+                } else {
+                    types[i] = upsert(c, entry.getIp(), entry.getUuid(), entry.getTime())
+                        ? ConnectionChange.Type.ADDED : ConnectionChange.Type.REFRESHED;
+
+                    if (entry.getType() == JournalEntry.Type.UPDATE) {
+                        login(c, entry.getIp(), entry.getUuid(), entry.getTime());
+                    }
+                }
+            }
+
+            return types;
+        }));
+
+        changes.ifPresent(types -> {
+            for (int i = 0; i < types.length; i++) {
+                if (types[i] != null) {
+                    publish(types[i], batch.get(i));
+                }
+            }
+        });
+
+        return changes.isPresent();
+    }
+
+    /**
+     * Measures the storage files together, if they are embedded H2 MVStores.
+     */
+    public Optional<FileStats> getFileStats() {
+        final List<FileStats> stats = readAll("Failed to measure the storage file.", this.storeFile::measure);
+
+        return stats.size() < this.shards.size() ? Optional.empty() : stats.stream().reduce(FileStats::plus);
+    }
+
+    /**
+     * Rewrites live data out of sparse parts of the storage file and gives
+     * the freed space back, spending at most {@code budget} on it.
+     *
+     * <p>Moving data around is only safe while nothing else reads the file,
+     * so the breaker is held open and both lanes are drained first. Writes
+     * made in the meantime go to the journal and are replayed afterwards.
+     * Returns empty if the lanes did not drain within {@code drainTimeout}
+     * or storage is not an embedded MVStore.</p>
+     */
+    public synchronized Optional<Compaction> compact(long budget, long drainTimeout, TimeUnit unit) {
+        final List<Lane> lanes = new ArrayList<>();
+        final List<Lane> drained = new ArrayList<>();
+
+        this.shards.forEach(shard -> lanes.add(shard.getWriteLane()));
+        this.shards.forEach(shard -> lanes.add(shard.getReadLane()));
+
+        this.breaker.hold();
+
+        try {
+            for (Lane lane : lanes) {
+                if (!lane.drain(drainTimeout, unit)) {
+                    this.logger.warn("Storage was too busy to be compacted.");
+                    return Optional.empty();
+                }
+
+                drained.add(lane);
+            }
+
+            final LocalDateTime time = LocalDateTime.now();
+            final long start = System.nanoTime();
+            FileStats before = null;
+            FileStats after = null;
+
+            // The shards share the budget, so storage is unavailable for no longer than with a single file.
+            for (Shard shard : this.shards) {
+                try (Connection conn = shard.getWriteLane().getConnection()) {
+                    final FileStats stats = this.storeFile.measure(conn);
+
+                    if (stats == null) {
+                        return Optional.empty();
+                    }
+
+                    this.storeFile.compact(conn, unit.toMillis(budget) / this.shards.size());
+
+                    final FileStats compacted = this.storeFile.measure(conn);
+
+                    if (compacted == null) {
+                        return Optional.empty();
+                    }
+
+                    before = before == null ? stats : before.plus(stats);
+                    after = after == null ? compacted : after.plus(compacted);
+                }
+            }
+
+            return Optional.of(new Compaction(time, before, after, Duration.ofNanos(System.nanoTime() - start)));
+        } catch (SQLException | RuntimeException e) {
+            this.logger.error("Failed to compact storage.");
+            e.printStackTrace();
+
+            return Optional.empty();
+        } finally {
+            drained.forEach(Lane::restore);
+            this.breaker.resume();
+        }
+    }
+
+    /**
+     * Writes a compressed SQL script of the registry, logins and session
+     * rollups to the target, which can be restored into an empty database
+     * with {@code RUNSCRIPT FROM 'target' COMPRESSION ZIP}.
+     *
+     * <p>H2 runs one statement at a time, so a single long statement would
+     * stall every join. Tables are read in short pages instead. Registry writes
+     * committed while the pages are read are appended to the end of the
+     * script, which makes the registry exact as of the end of the backup.</p>
+     *
+     * <p>Every shard goes into the same script. It is restored into an empty
+     * {@code storage.db} with the other shard files removed, and the rows are
+     * moved back out to their shards on the next start.</p>
+     */
+    public synchronized boolean backup(Path target) {
+        this.capture = new ConcurrentLinkedQueue<>();
+
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(target))) {
+            zip.putNextEntry(new ZipEntry("script.sql"));
+
+            final Writer writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8));
+
+            for (String table : new String[] {REGISTRY_TABLE, LOGINS_TABLE, DAILY_SESSIONS_TABLE, NAMES_TABLE}) {
+                writer.write(table);
+                writer.write(";\n");
+            }
+
+            for (int shard = 0; shard < this.shards.size(); shard++) {
+                final boolean complete = exportTable(writer, shard, "REGISTRY", new String[] {"IP", "ID"}, "INSTANT")
+                    && exportTable(writer, shard, "LOGINS", new String[] {"BUCKET", "IP", "ID"}, "FIRST", "LAST")
+                    && exportTable(writer, shard, "DAILY_SESSIONS", new String[] {"ID", "IP", "DAY"}, "SESSIONS", "DURATION");
+
+                if (!complete) {
+                    return false;
+                }
+            }
+
+            if (!exportTable(writer, 0, "NAMES", new String[] {"ID", "NAME"}, "FIRST")) {
+                return false;
+            }
+
+            // Writes that committed after their table was exported may not have been captured yet.
+            if (!awaitWrites()) {
+                return false;
+            }
+
+            final Queue<JournalEntry> redo;
+
+            // A replay captures its batch only once every shard has committed it, and removes it from the journal after.
+            synchronized (this.replayLock) {
+                redo = this.capture;
+                this.capture = null;
+
+                redo.addAll(this.journal.getPending());
+            }
+
+            for (JournalEntry entry : redo) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    writer.write("DELETE FROM REGISTRY WHERE IP = " + literal(entry.getIp()) + " AND ID = " + literal(entry.getUuid().toString()));
+                } else {
+                    writer.write("MERGE INTO REGISTRY(IP, ID, INSTANT) KEY(IP, ID) VALUES (" + literal(entry.getIp()) + ", "
+                        + literal(entry.getUuid().toString()) + ", " + literal(Timestamp.valueOf(entry.getTime())) + ")");
+                }
+
+                writer.write(";\n");
+            }
+
+            writer.flush();
+            zip.closeEntry();
+
+            return true;
+        } catch (IOException e) {
+            this.logger.error("Failed to write the storage backup.");
+            e.printStackTrace();
+
+            return false;
+        } finally {
+            this.capture = null;
+        }
+    }
+
+    /**
+     * Writes every row of the table as MERGE statements, reading it in pages
+     * in the order rows are stored, which is much cheaper than following
+     * the primary key index.
+     */
+    private boolean exportTable(Writer writer, int shard, String table, String[] keys, String... values) throws IOException {
+        final String columns = String.join(", ", keys) + ", " + String.join(", ", values);
+        final int width = keys.length + values.length;
+        long last = Long.MIN_VALUE;
+
+        while (true) {
+            final long after = last;
+            final Optional<List<Object[]>> page = scan(shard, "Failed to read " + table + " for a backup.", conn -> {
+                final List<Object[]> rows = new ArrayList<>();
+
+                try (PreparedStatement ps = conn.prepareStatement("SELECT _ROWID_, " + columns + " FROM " + table
+                    + " WHERE _ROWID_ > ? ORDER BY _ROWID_ LIMIT ?")) {
+                    ps.setLong(1, after);
+                    ps.setInt(2, PAGE_SIZE);
+
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) {
+                            final Object[] row = new Object[width + 1];
+
+                            for (int i = 0; i <= width; i++) {
+                                row[i] = rs.getObject(i + 1);
+                            }
+
+                            rows.add(row);
+                        }
+                    }
+                }
+
+                return rows;
+            });
+
+            if (!page.isPresent()) {
+                return false;
+            }
+
+            for (Object[] row : page.get()) {
+                writer.write("MERGE INTO " + table + "(" + columns + ") KEY(" + String.join(", ", keys) + ") VALUES (");
+
+                for (int i = 1; i <= width; i++) {
+                    writer.write((i == 1 ? "" : ", ") + literal(row[i]));
+                }
+
+                writer.write(");\n");
+            }
+
+            if (page.get().size() < PAGE_SIZE) {
+                return true;
+            }
+
+            last = ((Number) page.get().get(page.get().size() - 1)[0]).longValue();
+        }
+    }
+
+    private static String literal(Object value) {
+        if (value == null) {
+            return "NULL";
+        } else if (value instanceof Number) {
+            return value.toString();
+        } else if (value instanceof Timestamp) {
+            return "TIMESTAMP '" + value + "'";
+        } else if (value instanceof Date) {
+            return "DATE '" + value + "'";
+        }
+
+        return "'" + value.toString().replace("'", "''") + "'";
+    }
+
+    private void captured(JournalEntry entry) {
+        final Queue<JournalEntry> queue = this.capture;
+
+        if (queue != null) {
+            queue.add(entry);
+        }
+    }
+
+    /**
+     * Whether storage is currently unavailable or has journaled writes
+     * that have not been replayed, so results may be incomplete.
+     */
+    public boolean isDegraded() {
+        return this.breaker.getState() != CircuitBreaker.State.CLOSED || !this.journal.isEmpty();
+    }
+
+    /**
+     * The number of storage calls that failed since startup.
+     */
+    public long getFailureCount() {
+        return this.failures.get();
+    }
+
+    /**
+     * The number of writes that lost a race to a concurrent write of the
+     * same connection since startup.
+     */
+    public long getConflictCount() {
+        return this.conflicts.get();
+    }
+
+    /**
+     * The number of reads that were cancelled for taking too long, or that
+     * gave up waiting for the read lane, since startup.
+     */
+    public long getTimeoutCount() {
+        return this.timeouts.get();
+    }
+
+    public List<Shard> getShards() {
+        return this.shards;
+    }
+
+    public boolean isPresent(InetAddress ip, UUID uuid) {
+        final String address = ip.getHostAddress();
+        final List<JournalEntry> pending = this.journal.getPending();
+
+        for (int i = pending.size() - 1; i >= 0; i--) {
+            final JournalEntry entry = pending.get(i);
+
+            if (entry.getIp().equals(address) && entry.getUuid().equals(uuid)) {
+                return entry.getType() != JournalEntry.Type.PURGE;
+            }
+        }
+
+        return read(shardOf(address), "Failed to verify existence of player", conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM REGISTRY WHERE IP = ? AND ID = ?")) {
+                ps.setString(1, address);
+                ps.setString(2, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    return rs.next();
+                }
+            }
+        }).orElse(false);
+    }
+
+    /**
+     * Creates the connection, or refreshes its time if it already exists, in
+     * a single transaction so that concurrent joins cannot race each other.
+     */
+    public void recordConnection(InetAddress ip, UUID uuid, LocalDateTime time) {
+        write(new JournalEntry(JournalEntry.Type.UPDATE, ip.getHostAddress(), uuid, time), "Failed to record connection.",
+            conn -> transaction(conn, c -> {
+                final boolean created = upsert(c, ip.getHostAddress(), uuid, time);
+                login(c, ip.getHostAddress(), uuid, time);
+                return Optional.of(created ? ConnectionChange.Type.ADDED : ConnectionChange.Type.REFRESHED);
+            }));
+    }
+
+    public void addConnection(InetAddress ip, UUID uuid, LocalDateTime time) {
+        write(new JournalEntry(JournalEntry.Type.ADD, ip.getHostAddress(), uuid, time), "Failed to create new connection.",
+            conn -> transaction(conn, c -> {
+                insert(c, ip.getHostAddress(), uuid, time);
+                return Optional.of(ConnectionChange.Type.ADDED);
+            }));
+    }
+
+    public void updateConnection(InetAddress ip, UUID uuid, LocalDateTime time) {
+        write(new JournalEntry(JournalEntry.Type.UPDATE, ip.getHostAddress(), uuid, time), "Failed to update old connection.",
+            conn -> transaction(conn, c -> {
+                try (PreparedStatement ps = c.prepareStatement("UPDATE REGISTRY SET INSTANT = ? WHERE IP = ? AND ID = ?")) {
+                    ps.setTimestamp(1, Timestamp.valueOf(time));
+                    ps.setString(2, ip.getHostAddress());
+                    ps.setString(3, uuid.toString());
+
+                    if (ps.executeUpdate() == 0) {
+                        return Optional.empty();
+                    }
+                }
+
+                // Logged the same as a join, which is what replaying this write from the journal does too.
+                login(c, ip.getHostAddress(), uuid, time);
+
+                return Optional.of(ConnectionChange.Type.REFRESHED);
+            }));
+    }
+
+    public void purgeConnection(InetAddress ip, UUID uuid) {
+        write(new JournalEntry(JournalEntry.Type.PURGE, ip.getHostAddress(), uuid, LocalDateTime.now()), "Failed to purge connection.",
+            conn -> transaction(conn, c -> delete(c, ip.getHostAddress(), uuid)
+                ? Optional.of(ConnectionChange.Type.PURGED) : Optional.empty()));
+    }
+
+    private void insert(Connection conn, String ip, UUID uuid, LocalDateTime time) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO REGISTRY(IP, ID, INSTANT, SEQ) VALUES (?, ?, ?, ?)")) {
+            ps.setString(1, ip);
+            ps.setString(2, uuid.toString());
+            ps.setTimestamp(3, Timestamp.valueOf(time));
+            ps.setLong(4, nextSequence());
+
+            ps.execute();
+        }
+
+        incrementFanout(conn, ip);
+    }
+
+    /**
+     * Deletes the connection, and returns whether it existed.
+     */
+    private boolean delete(Connection conn, String ip, UUID uuid) throws SQLException {
+        final boolean deleted;
+
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM REGISTRY WHERE IP = ? AND ID = ?")) {
+            ps.setString(1, ip);
+            ps.setString(2, uuid.toString());
+
+            deleted = ps.executeUpdate() > 0;
+
+            if (deleted) {
+                decrementFanout(conn, ip);
+
+                try (PreparedStatement purged = conn.prepareStatement("INSERT INTO PURGED(SEQ, IP, ID) VALUES (?, ?, ?)")) {
+                    purged.setLong(1, nextSequence());
+                    purged.setString(2, ip);
+                    purged.setString(3, uuid.toString());
+
+                    purged.execute();
+                }
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("DELETE FROM LOGINS WHERE IP = ? AND ID = ?")) {
+            ps.setString(1, ip);
+            ps.setString(2, uuid.toString());
+
+            ps.execute();
+        }
+
+        return deleted;
+    }
+
+    /**
+     * Numbers a new or purged connection. Numbers are handed out in memory,
+     * so that they can be compared across shards without any shard waiting
+     * on another. A number given to a write that is rolled back is skipped.
+     */
+    private long nextSequence() {
+        return this.sequence.incrementAndGet();
+    }
+
+    /**
+     * Gets the highest number stored on the shard. Databases from before
+     * numbers were handed out in memory still have theirs in a sequence.
+     */
+    private static long lastSequence(Shard shard) throws SQLException {
+        try (Connection conn = shard.getWriteLane().getConnection()) {
+            try (PreparedStatement ps = conn.prepareStatement("SELECT GREATEST("
+                + "COALESCE((SELECT MAX(SEQ) FROM REGISTRY), 0), "
+                + "COALESCE((SELECT MAX(SEQ) FROM PURGED), 0), "
+                + "COALESCE((SELECT CURRENT_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'REGISTRY_SEQ'), 0))")) {
+                try (ResultSet rs = ps.executeQuery()) {
+                    rs.next();
+                    return rs.getLong(1);
+                }
+            }
+        }
+    }
+
+    /**
+     * Refreshes the connection, or creates it, and returns whether it was
+     * created.
+     */
+    private boolean upsert(Connection conn, String ip, UUID uuid, LocalDateTime time) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE REGISTRY SET INSTANT = ? WHERE IP = ? AND ID = ?")) {
+            ps.setTimestamp(1, Timestamp.valueOf(time));
+            ps.setString(2, ip);
+            ps.setString(3, uuid.toString());
+
+            if (ps.executeUpdate() > 0) {
+                return false;
+            }
+        }
+
+        try {
+            insert(conn, ip, uuid, time);
+            return true;
+        } catch (SQLException e) {
+            // Another write created the connection first, so only refresh it.
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+
+            return upsert(conn, ip, uuid, time);
+        }
+    }
+
+    private void login(Connection conn, String ip, UUID uuid, LocalDateTime time) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE LOGINS SET FIRST = LEAST(FIRST, ?), LAST = GREATEST(LAST, ?)"
+            + " WHERE BUCKET = ? AND IP = ? AND ID = ?")) {
+            ps.setTimestamp(1, Timestamp.valueOf(time));
+            ps.setTimestamp(2, Timestamp.valueOf(time));
+            ps.setInt(3, bucket(time));
+            ps.setString(4, ip);
+            ps.setString(5, uuid.toString());
+
+            if (ps.executeUpdate() > 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO LOGINS(BUCKET, IP, ID, FIRST, LAST) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setInt(1, bucket(time));
+            ps.setString(2, ip);
+            ps.setString(3, uuid.toString());
+            ps.setTimestamp(4, Timestamp.valueOf(time));
+            ps.setTimestamp(5, Timestamp.valueOf(time));
+
+            ps.execute();
+        } catch (SQLException e) {
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+
+            login(conn, ip, uuid, time);
+        }
+    }
+
+    private static int bucket(LocalDateTime time) {
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 3600L);
+    }
+
+    private void incrementFanout(Connection conn, String ip) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement("UPDATE FANOUT SET ACCOUNTS = ACCOUNTS + 1 WHERE IP = ?")) {
+            update.setString(1, ip);
+
+            if (update.executeUpdate() > 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement insert = conn.prepareStatement("INSERT INTO FANOUT(IP, ACCOUNTS) VALUES (?, 1)")) {
+            insert.setString(1, ip);
+            insert.execute();
+        } catch (SQLException e) {
+            // Another join created the counter first, so count against theirs.
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+
+            incrementFanout(conn, ip);
+        }
+    }
+
+    private void decrementFanout(Connection conn, String ip) throws SQLException {
+        try (PreparedStatement update = conn.prepareStatement("UPDATE FANOUT SET ACCOUNTS = ACCOUNTS - 1 WHERE IP = ?")) {
+            update.setString(1, ip);
+            update.execute();
+        }
+
+        try (PreparedStatement delete = conn.prepareStatement("DELETE FROM FANOUT WHERE IP = ? AND ACCOUNTS <= 0")) {
+            delete.setString(1, ip);
+            delete.execute();
+        }
+    }
+
+    /**
+     * Adds a closed session to the daily rollups, splitting it at midnight
+     * so that every day only holds the time actually played on it.
+     */
+    public void recordSession(Session session, LocalDateTime end) {
+        final String ip = session.getIp().getHostAddress();
+
+        execute(shardOf(ip), "Failed to record a session.", conn -> transaction(conn, c -> {
+            LocalDateTime from = session.getStart();
+            int sessions = 1;
+
+            while (from.isBefore(end)) {
+                final LocalDateTime midnight = from.toLocalDate().plusDays(1).atStartOfDay();
+                final LocalDateTime to = end.isBefore(midnight) ? end : midnight;
+
+                addToRollup(c, from.toLocalDate(), session.getUuid(), ip, sessions, Duration.between(from, to).getSeconds());
+
+                sessions = 0;
+                from = to;
+            }
+
+            return true;
+        }));
+    }
+
+    /**
+     * Records that the account was seen with the name, keeping the time it
+     * was first seen if it already was. False if storage failed.
+     */
+    public boolean recordName(UUID uuid, String name, LocalDateTime time) {
+        return execute(0, "Failed to record a name.", conn -> {
+            try (PreparedStatement ps = conn.prepareStatement("INSERT INTO NAMES(ID, NAME, FIRST) VALUES (?, ?, ?)")) {
+                ps.setString(1, uuid.toString());
+                ps.setString(2, name);
+                ps.setTimestamp(3, Timestamp.valueOf(time));
+
+                ps.execute();
+            } catch (SQLException e) {
+                if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                    throw e;
+                }
+            }
+
+            return true;
+        }).isPresent();
+    }
+
+    private void addToRollup(Connection conn, LocalDate day, UUID uuid, String ip, int sessions, long seconds) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE DAILY_SESSIONS SET SESSIONS = SESSIONS + ?, DURATION = DURATION + ?"
+            + " WHERE ID = ? AND IP = ? AND DAY = ?")) {
+            ps.setInt(1, sessions);
+            ps.setLong(2, seconds);
+            ps.setString(3, uuid.toString());
+            ps.setString(4, ip);
+            ps.setDate(5, Date.valueOf(day));
+
+            if (ps.executeUpdate() > 0) {
+                return;
+            }
+        }
+
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO DAILY_SESSIONS(DAY, ID, IP, SESSIONS, DURATION) VALUES (?, ?, ?, ?, ?)")) {
+            ps.setDate(1, Date.valueOf(day));
+            ps.setString(2, uuid.toString());
+            ps.setString(3, ip);
+            ps.setInt(4, sessions);
+            ps.setLong(5, seconds);
+
+            ps.execute();
+        } catch (SQLException e) {
+            if (!DUPLICATE_KEY.equals(e.getSQLState())) {
+                throw e;
+            }
+
+            addToRollup(conn, day, uuid, ip, sessions, seconds);
+        }
+    }
+
+    /**
+     * Gets the playtime of the specified player on each address over the
+     * last {@code days} days.
+     */
+    public Map<String, Playtime> getPlaytime(UUID uuid, int days) {
+        return merge(readAll("Failed to get the playtime of this uuid.", conn -> {
+            final Map<String, Playtime> playtime = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP, SUM(SESSIONS), SUM(DURATION) FROM DAILY_SESSIONS"
+                + " WHERE ID = ? AND DAY >= ? GROUP BY IP")) {
+                ps.setString(1, uuid.toString());
+                ps.setDate(2, Date.valueOf(LocalDate.now().minusDays(days - 1)));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        playtime.put(rs.getString(1), new Playtime(rs.getInt(2), Duration.ofSeconds(rs.getLong(3))));
+                    }
+                }
+            }
+
+            return playtime;
+        }));
+    }
+
+    /**
+     * Gets the playtime of every player on the specified address over the
+     * last {@code days} days.
+     */
+    public Map<UUID, Playtime> getPlaytime(InetAddress ip, int days) {
+        return read(shardOf(ip.getHostAddress()), "Failed to get the playtime of this ip address.", conn -> {
+            final Map<UUID, Playtime> playtime = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT ID, SUM(SESSIONS), SUM(DURATION) FROM DAILY_SESSIONS"
+                + " WHERE IP = ? AND DAY >= ? GROUP BY ID")) {
+                ps.setString(1, ip.getHostAddress());
+                ps.setDate(2, Date.valueOf(LocalDate.now().minusDays(days - 1)));
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        playtime.put(UUID.fromString(rs.getString(1)), new Playtime(rs.getInt(2), Duration.ofSeconds(rs.getLong(3))));
+                    }
+                }
+            }
+
+            return playtime;
+        }).orElseGet(HashMap::new);
+    }
+
+    public Set<UUID> getAliases(UUID uuid) {
+        return getAliases(uuid, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets every player sharing an address with the specified player, only
+     * following addresses used by at most {@code maxAccounts} accounts.
+     */
+    public Set<UUID> getAliases(UUID uuid, int maxAccounts) {
+        return union(readAll("Failed to get all possible aliases of a player from storage.", conn -> {
+            final Set<UUID> aliases = new HashSet<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT DISTINCT(REG.ID) FROM REGISTRY"
+                + " JOIN FANOUT ON (FANOUT.IP = REGISTRY.IP)"
+                + " JOIN REGISTRY REG ON (REGISTRY.IP = REG.IP)"
+                + " WHERE REGISTRY.ID = ? AND FANOUT.ACCOUNTS <= ?")) {
+                ps.setString(1, uuid.toString());
+                ps.setInt(2, maxAccounts);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        aliases.add(UUID.fromString(rs.getString(1)));
+                    }
+                }
+            }
+
+            return aliases;
+        }));
+    }
+
+    /**
+     * Gets the aliases of every specified player with a single query, by
+     * joining against the players passed as an array parameter.
+     */
+    public Map<UUID, Set<UUID>> getAliases(Collection<UUID> uuids, int maxAccounts) {
+        return mergeSets(readAll("Failed to get the aliases of several players from storage.", conn -> {
+            final Map<UUID, Set<UUID>> aliases = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT DISTINCT REGISTRY.ID, REG.ID FROM TABLE(K VARCHAR = ?) KEYS"
+                + " JOIN REGISTRY ON (REGISTRY.ID = KEYS.K)"
+                + " JOIN FANOUT ON (FANOUT.IP = REGISTRY.IP)"
+                + " JOIN REGISTRY REG ON (REGISTRY.IP = REG.IP)"
+                + " WHERE FANOUT.ACCOUNTS <= ?")) {
+                ps.setObject(1, uuids.stream().map(UUID::toString).distinct().toArray());
+                ps.setInt(2, maxAccounts);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        aliases.computeIfAbsent(UUID.fromString(rs.getString(1)), key -> new HashSet<>())
+                            .add(UUID.fromString(rs.getString(2)));
+                    }
+                }
+            }
+
+            return aliases;
+        }));
+    }
+
+    /**
+     * Gets the players of every specified address with a single query.
+     */
+    public Map<String, Set<UUID>> getPlayers(Collection<InetAddress> ips) {
+        final Set<String> addresses = ips.stream().map(InetAddress::getHostAddress).collect(Collectors.toSet());
+        final Map<String, Set<UUID>> players = merge(readAll("Failed to get the players of several ip addresses.", conn -> {
+            final Map<String, Set<UUID>> result = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT REGISTRY.IP, REGISTRY.ID FROM TABLE(K VARCHAR = ?) KEYS"
+                + " JOIN REGISTRY ON (REGISTRY.IP = KEYS.K)")) {
+                ps.setObject(1, addresses.toArray());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.computeIfAbsent(rs.getString(1), key -> new HashSet<>()).add(UUID.fromString(rs.getString(2)));
+                    }
+                }
+            }
+
+            return result;
+        }));
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (addresses.contains(entry.getIp())) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    players.getOrDefault(entry.getIp(), new HashSet<>()).remove(entry.getUuid());
+                } else {
+                    players.computeIfAbsent(entry.getIp(), key -> new HashSet<>()).add(entry.getUuid());
+                }
+            }
+        }
+
+        return players;
+    }
+
+    /**
+     * Gets the addresses of every specified player with a single query.
+     */
+    public Map<UUID, Set<String>> getAddresses(Collection<UUID> uuids) {
+        final Set<UUID> players = new HashSet<>(uuids);
+        final Map<UUID, Set<String>> addresses = mergeSets(readAll("Failed to get the ip addresses of several players.", conn -> {
+            final Map<UUID, Set<String>> result = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT REGISTRY.ID, REGISTRY.IP FROM TABLE(K VARCHAR = ?) KEYS"
+                + " JOIN REGISTRY ON (REGISTRY.ID = KEYS.K)")) {
+                ps.setObject(1, players.stream().map(UUID::toString).toArray());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.computeIfAbsent(UUID.fromString(rs.getString(1)), key -> new HashSet<>()).add(rs.getString(2));
+                    }
+                }
+            }
+
+            return result;
+        }));
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (players.contains(entry.getUuid())) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    addresses.getOrDefault(entry.getUuid(), new HashSet<>()).remove(entry.getIp());
+                } else {
+                    addresses.computeIfAbsent(entry.getUuid(), key -> new HashSet<>()).add(entry.getIp());
+                }
+            }
+        }
+
+        return addresses;
+    }
+
+    /**
+     * Gets the addresses of the specified player that are used by more than
+     * {@code maxAccounts} accounts, with their account counts.
+     */
+    public Map<String, Integer> getSharedAddresses(UUID uuid, int maxAccounts) {
+        return merge(readAll("Failed to get the shared addresses of a player from storage.", conn -> {
+            final Map<String, Integer> addresses = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT REGISTRY.IP, FANOUT.ACCOUNTS FROM REGISTRY"
+                + " JOIN FANOUT ON (FANOUT.IP = REGISTRY.IP)"
+                + " WHERE REGISTRY.ID = ? AND FANOUT.ACCOUNTS > ?")) {
+                ps.setString(1, uuid.toString());
+                ps.setInt(2, maxAccounts);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        addresses.put(rs.getString(1), rs.getInt(2));
+                    }
+                }
+            }
+
+            return addresses;
+        }));
+    }
+
+    public Set<UUID> getPlayers(InetAddress ip) {
+        final String address = ip.getHostAddress();
+        final Set<UUID> players = read(shardOf(address), "Failed to get all players connected to this ip address.", conn -> {
+            final Set<UUID> result = new HashSet<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT ID FROM REGISTRY WHERE IP = ?")) {
+                ps.setString(1, address);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(UUID.fromString(rs.getString(1)));
+                    }
+                }
+            }
+
+            return result;
+        }).orElseGet(HashSet::new);
+
+        // Journaled writes have not reached storage yet, so layer them on top.
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getIp().equals(address)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    players.remove(entry.getUuid());
+                } else {
+                    players.add(entry.getUuid());
+                }
+            }
+        }
+
+        return players;
+    }
+
+    public Set<String> getAddresses(UUID uuid) {
+        final Set<String> addresses = union(readAll("Failed to get all ip addresses connected to this uuid.", conn -> {
+            final Set<String> result = new HashSet<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP FROM REGISTRY WHERE ID = ?")) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(rs.getString(1));
+                    }
+                }
+            }
+
+            return result;
+        }));
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getUuid().equals(uuid)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    addresses.remove(entry.getIp());
+                } else {
+                    addresses.add(entry.getIp());
+                }
+            }
+        }
+
+        return addresses;
+    }
+
+    public Map<String, LocalDateTime> getAddressesAndTime(UUID uuid) {
+        final Map<String, LocalDateTime> data = merge(readAll("Failed to get all ip addresses and dates connected to this uuid.", conn -> {
+            final Map<String, LocalDateTime> result = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP, INSTANT FROM REGISTRY WHERE ID = ? ORDER BY INSTANT")) {
+                ps.setString(1, uuid.toString());
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(rs.getString(1), rs.getTimestamp(2).toLocalDateTime());
+                    }
+                }
+            }
+
+            return result;
+        }));
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getUuid().equals(uuid)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    data.remove(entry.getIp());
+                } else {
+                    data.put(entry.getIp(), entry.getTime());
+                }
+            }
+        }
+
+        return data;
+    }
+
+    public Map<UUID, LocalDateTime> getPlayersAndTime(InetAddress ip) {
+        final String address = ip.getHostAddress();
+        final Map<UUID, LocalDateTime> data = read(shardOf(address), "Failed to get all uuids and dates connected to this ip address.", conn -> {
+            final Map<UUID, LocalDateTime> result = new HashMap<>();
+
+            try (PreparedStatement ps = conn.prepareStatement("SELECT ID, INSTANT FROM REGISTRY WHERE IP = ? ORDER BY INSTANT")) {
+                ps.setString(1, address);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(UUID.fromString(rs.getString(1)), rs.getTimestamp(2).toLocalDateTime());
+                    }
+                }
+            }
+
+            return result;
+        }).orElseGet(HashMap::new);
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getIp().equals(address)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    data.remove(entry.getUuid());
+                } else {
+                    data.put(entry.getUuid(), entry.getTime());
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Gets the players that logged in from the specified address within the
+     * window, with the time of their last login in it. Logins are kept per
+     * hour, so only the first and last login of each hour are known.
+     */
+    public Map<UUID, LocalDateTime> getPlayersAndTime(InetAddress ip, LocalDateTime from, LocalDateTime to) {
+        final String address = ip.getHostAddress();
+        final Map<UUID, LocalDateTime> data = new LinkedHashMap<>();
+
+        for (Login login : getLogins("IP = ? AND", address, from, to, Integer.MAX_VALUE)) {
+            // Rows are newest first, one per hour, so the first row of each player is its last login.
+            data.putIfAbsent(login.getUuid(), login.getTime());
+        }
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getIp().equals(address)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    data.remove(entry.getUuid());
+                } else if (entry.getType() == JournalEntry.Type.UPDATE && within(entry.getTime(), from, to)) {
+                    data.merge(entry.getUuid(), entry.getTime(), (a, b) -> a.isAfter(b) ? a : b);
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Gets the addresses the specified player logged in from within the
+     * window, with the time of their last login from each.
+     */
+    public Map<String, LocalDateTime> getAddressesAndTime(UUID uuid, LocalDateTime from, LocalDateTime to) {
+        final Map<String, LocalDateTime> data = new LinkedHashMap<>();
+
+        for (Login login : getLogins("ID = ? AND", uuid.toString(), from, to, Integer.MAX_VALUE)) {
+            data.putIfAbsent(login.getIp(), login.getTime());
+        }
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getUuid().equals(uuid)) {
+                if (entry.getType() == JournalEntry.Type.PURGE) {
+                    data.remove(entry.getIp());
+                } else if (entry.getType() == JournalEntry.Type.UPDATE && within(entry.getTime(), from, to)) {
+                    data.merge(entry.getIp(), entry.getTime(), (a, b) -> a.isAfter(b) ? a : b);
+                }
+            }
+        }
+
+        return data;
+    }
+
+    /**
+     * Gets up to {@code limit} logins from any address within the window,
+     * most recent first.
+     */
+    public List<Login> getLogins(LocalDateTime from, LocalDateTime to, int limit) {
+        final List<Login> logins = getLogins("", null, from, to, limit);
+
+        for (JournalEntry entry : this.journal.getPending()) {
+            if (entry.getType() == JournalEntry.Type.UPDATE && within(entry.getTime(), from, to)) {
+                logins.add(0, new Login(entry.getIp(), entry.getUuid(), entry.getTime()));
+            }
+        }
+
+        return logins.size() > limit ? new ArrayList<>(logins.subList(0, limit)) : logins;
+    }
+
+    private List<Login> getLogins(String filter, String key, LocalDateTime from, LocalDateTime to, int limit) {
+        final SqlFunction<List<Login>> query = conn -> {
+            final List<Login> logins = new ArrayList<>();
+
+            // Only the first and last login of each hour are stored, so the latest of them within the window is reported.
+            try (PreparedStatement ps = conn.prepareStatement("SELECT IP, ID, CASE WHEN LAST <= ? THEN LAST ELSE FIRST END AS TIME"
+                + " FROM LOGINS WHERE " + filter + " BUCKET BETWEEN ? AND ? AND (LAST BETWEEN ? AND ? OR FIRST BETWEEN ? AND ?)"
+                + " ORDER BY TIME DESC LIMIT ?")) {
+                int index = 1;
+
+                ps.setTimestamp(index++, Timestamp.valueOf(to));
+
+                if (key != null) {
+                    ps.setString(index++, key);
+                }
+
+                ps.setInt(index++, bucket(from));
+                ps.setInt(index++, bucket(to));
+                ps.setTimestamp(index++, Timestamp.valueOf(from));
+                ps.setTimestamp(index++, Timestamp.valueOf(to));
+                ps.setTimestamp(index++, Timestamp.valueOf(from));
+                ps.setTimestamp(index++, Timestamp.valueOf(to));
+                ps.setInt(index, limit);
+
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        logins.add(new Login(rs.getString(1), UUID.fromString(rs.getString(2)), rs.getTimestamp(3).toLocalDateTime()));
+                    }
+                }
+            }
+
+            return logins;
+        };
+
+        // Logins of an address are all on its shard, but any others could be on every shard.
+        if (key != null && filter.startsWith("IP")) {
+            return read(shardOf(key), "Failed to get logins within this time window.", query).orElseGet(ArrayList::new);
+        }
+
+        return readAll("Failed to get logins within this time window.", query).stream()
+            .flatMap(List::stream)
+            .sorted(Comparator.comparing(Login::getTime).reversed())
+            .limit(limit)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    private static <T> Set<T> union(List<Set<T>> sets) {
+        final Set<T> union = new HashSet<>();
+        sets.forEach(union::addAll);
+
+        return union;
+    }
+
+    /**
+     * Merges results keyed by address, which every shard has different keys
+     * for.
+     */
+    private static <K, V> Map<K, V> merge(List<Map<K, V>> maps) {
+        final Map<K, V> merged = new HashMap<>();
+        maps.forEach(merged::putAll);
+
+        return merged;
+    }
+
+    private static <K, V> Map<K, Set<V>> mergeSets(List<Map<K, Set<V>>> maps) {
+        final Map<K, Set<V>> merged = new HashMap<>();
+        maps.forEach(map -> map.forEach((key, values) -> merged.computeIfAbsent(key, k -> new HashSet<>()).addAll(values)));
+
+        return merged;
+    }
+
+    private static boolean within(LocalDateTime time, LocalDateTime from, LocalDateTime to) {
+        return !time.isBefore(from) && !time.isAfter(to);
+    }
+
+    @FunctionalInterface
+    private interface SqlFunction<T> {
+
+        T apply(Connection conn) throws SQLException;
+
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import com.ichorpowered.iplog.api.ChangeSubscriber;
+import com.ichorpowered.iplog.api.ChangeSubscription;
+import com.ichorpowered.iplog.api.IPLogService;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
+
+public class StorageService implements IPLogService {
+
+    private final Storage storage;
+    private final Executor executor;
+    private final IntSupplier fanoutThreshold;
+
+    public StorageService(Storage storage, Executor executor, IntSupplier fanoutThreshold) {
+        this.storage = storage;
+        this.executor = executor;
+        this.fanoutThreshold = fanoutThreshold;
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Set<UUID>>> getAliases(Collection<UUID> uuids) {
+        return CompletableFuture.supplyAsync(() -> this.storage.getAliases(uuids, this.fanoutThreshold.getAsInt()), this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<InetAddress, Set<UUID>>> getPlayers(Collection<InetAddress> ips) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Map<String, Set<UUID>> players = this.storage.getPlayers(ips);
+            final Map<InetAddress, Set<UUID>> result = new HashMap<>();
+
+            for (InetAddress ip : ips) {
+                final Set<UUID> found = players.get(ip.getHostAddress());
+
+                if (found != null && !found.isEmpty()) {
+                    result.put(ip, found);
+                }
+            }
+
+            return result;
+        }, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, Set<InetAddress>>> getAddresses(Collection<UUID> uuids) {
+        return CompletableFuture.supplyAsync(() -> {
+            final Map<UUID, Set<InetAddress>> result = new HashMap<>();
+
+            this.storage.getAddresses(uuids).forEach((uuid, addresses) -> {
+                final Set<InetAddress> parsed = new HashSet<>();
+
+                for (String address : addresses) {
+                    try {
+                        parsed.add(InetAddress.getByName(address));
+                    } catch (UnknownHostException e) {
+                        // Stored addresses are always literals, so this cannot resolve anything.
+                    }
+                }
+
+                if (!parsed.isEmpty()) {
+                    result.put(uuid, parsed);
+                }
+            });
+
+            return result;
+        }, this.executor);
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, LocalDateTime>> getPlayersAndTime(InetAddress ip) {
+        return CompletableFuture.supplyAsync(() -> this.storage.getPlayersAndTime(ip), this.executor);
+    }
+
+    @Override
+    public boolean isDegraded() {
+        return this.storage.isDegraded();
+    }
+
+    @Override
+    public ChangeSubscription subscribe(ChangeSubscriber subscriber, int capacity) {
+        return this.storage.getChangeStream().subscribe(subscriber, capacity);
+    }
+
+}
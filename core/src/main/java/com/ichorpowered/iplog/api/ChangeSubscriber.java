@@ -0,0 +1,57 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.api;
+
+/**
+ * Receives connection changes, in order, on a thread of its own.
+ */
+public interface ChangeSubscriber {
+
+    void onChange(ConnectionChange change);
+
+    /**
+     * Called in place of changes that were dropped because the subscriber
+     * fell too far behind. Anything built from the changes should be
+     * refreshed from storage.
+     */
+    default void onOverflow(long dropped) {
+    }
+
+    /**
+     * Called whenever every queued change has been delivered, which is a
+     * good time to flush.
+     */
+    default void onIdle() {
+    }
+
+    /**
+     * Called once the subscription is cancelled, after the changes that
+     * were still queued have been delivered.
+     */
+    default void onComplete() {
+    }
+
+}
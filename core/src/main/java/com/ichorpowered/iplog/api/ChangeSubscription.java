@@ -0,0 +1,46 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.api;
+
+public interface ChangeSubscription {
+
+    /**
+     * Stops delivering changes once the ones already queued are delivered,
+     * waiting a few seconds for them.
+     */
+    void cancel();
+
+    /**
+     * Gets how many changes are waiting to be delivered.
+     */
+    int getQueued();
+
+    /**
+     * Gets how many changes were dropped because the queue was full.
+     */
+    long getDroppedCount();
+
+}
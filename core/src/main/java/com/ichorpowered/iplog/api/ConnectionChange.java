@@ -0,0 +1,94 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.api;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * A connection that was written to storage.
+ */
+public final class ConnectionChange {
+
+    public enum Type {
+        /**
+         * The player was seen on the address for the first time.
+         */
+        ADDED,
+        /**
+         * The player joined again from an address they were already seen on.
+         */
+        REFRESHED,
+        /**
+         * The connection was removed by staff.
+         */
+        PURGED
+    }
+
+    private final long sequence;
+    private final Type type;
+    private final InetAddress ip;
+    private final UUID uuid;
+    private final LocalDateTime time;
+
+    public ConnectionChange(long sequence, Type type, InetAddress ip, UUID uuid, LocalDateTime time) {
+        this.sequence = sequence;
+        this.type = type;
+        this.ip = ip;
+        this.uuid = uuid;
+        this.time = time;
+    }
+
+    /**
+     * Gets the number of the change. Changes are numbered from 1 in the order
+     * they were committed since the server started, so a subscriber can
+     * tell whether it missed any.
+     */
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public InetAddress getIp() {
+        return this.ip;
+    }
+
+    public UUID getUuid() {
+        return this.uuid;
+    }
+
+    /**
+     * Gets the time of the join, or of the purge.
+     */
+    public LocalDateTime getTime() {
+        return this.time;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.api;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Asynchronous queries against the IPLog registry for other plugins.
+ *
+ * <p>Obtain it with {@code Sponge.getServiceManager().provide(IPLogService.class)}.
+ * Futures complete off the main thread, and the batch methods answer a whole
+ * collection of keys with a handful of set-based queries. Keys that have no
+ * connections are missing from the returned maps.</p>
+ */
+public interface IPLogService {
+
+    /**
+     * Gets the players sharing an address with each specified player,
+     * ignoring addresses shared by more accounts than the configured
+     * threshold. Every player is included in their own aliases.
+     */
+    CompletableFuture<Map<UUID, Set<UUID>>> getAliases(Collection<UUID> uuids);
+
+    CompletableFuture<Map<InetAddress, Set<UUID>>> getPlayers(Collection<InetAddress> ips);
+
+    CompletableFuture<Map<UUID, Set<InetAddress>>> getAddresses(Collection<UUID> uuids);
+
+    CompletableFuture<Map<UUID, LocalDateTime>> getPlayersAndTime(InetAddress ip);
+
+    /**
+     * Whether storage is currently unavailable or catching up, in which case
+     * results may be incomplete.
+     */
+    boolean isDegraded();
+
+    /**
+     * Subscribes to connections being added, refreshed and purged, from now
+     * on. Changes are delivered in order on a thread of the subscription's
+     * own, and at most {@code capacity} are queued for it. Once they are,
+     * further changes are dropped and the subscriber is told how many.
+     */
+    ChangeSubscription subscribe(ChangeSubscriber subscriber, int capacity);
+
+    default CompletableFuture<Set<UUID>> getAliases(UUID uuid) {
+        return getAliases(Collections.singleton(uuid)).thenApply(aliases -> aliases.getOrDefault(uuid, Collections.emptySet()));
+    }
+
+    default CompletableFuture<Set<UUID>> getPlayers(InetAddress ip) {
+        return getPlayers(Collections.singleton(ip)).thenApply(players -> players.getOrDefault(ip, Collections.emptySet()));
+    }
+
+    default CompletableFuture<Set<InetAddress>> getAddresses(UUID uuid) {
+        return getAddresses(Collections.singleton(uuid)).thenApply(addresses -> addresses.getOrDefault(uuid, Collections.emptySet()));
+    }
+
+    default ChangeSubscription subscribe(ChangeSubscriber subscriber) {
+        return subscribe(subscriber, 1024);
+    }
+
+}
@@ -0,0 +1,457 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.audit;
+
+import com.ichorpowered.iplog.Storage;
+import com.ichorpowered.iplog.storage.ConnectionListener;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Groups every account in the registry into clusters of alts and writes them
+ * to a report, largest cluster first.
+ *
+ * <p>The registry is read once. Connections are sorted by address and the
+ * addresses are split between fork-join tasks, which each union the accounts
+ * sharing an address into their own disjoint sets. The sets are merged
+ * pairwise as the tasks complete. Like {@link Storage#getAliases(UUID, int)},
+ * addresses shared by more than {@code maxAccounts} accounts do not link
+ * anyone.</p>
+ */
+public final class AltAudit implements ConnectionListener {
+
+    public enum Phase {
+        READING,
+        CLUSTERING,
+        WRITING,
+        DONE,
+        CANCELLED,
+        FAILED
+    }
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final int MIN_ADDRESSES_PER_TASK = 4096;
+
+    private final Path report;
+    private final int maxAccounts;
+    private final Function<UUID, Optional<String>> names;
+
+    private final Map<String, Integer> addressIds = new HashMap<>();
+    private final List<String> addresses = new ArrayList<>();
+    private final Map<UUID, Integer> playerIds = new HashMap<>();
+    private final List<UUID> players = new ArrayList<>();
+    private final Set<Long> purged = new HashSet<>();
+
+    // Each connection is the address id in the high half and the player id in the low half.
+    private long[] connections = new long[1024];
+    private int connectionCount;
+
+    private final AtomicLong done = new AtomicLong();
+    private volatile long total;
+    private volatile Phase phase = Phase.READING;
+    private volatile boolean cancelled;
+    private volatile int clusterCount;
+
+    public AltAudit(Path report, int maxAccounts, Function<UUID, Optional<String>> names) {
+        this.report = report;
+        this.maxAccounts = maxAccounts;
+        this.names = names;
+    }
+
+    @Override
+    public void connectionRecorded(String ip, UUID uuid) {
+        final long connection = connection(ip, uuid);
+
+        if (this.connectionCount == this.connections.length) {
+            this.connections = Arrays.copyOf(this.connections, this.connections.length * 2);
+        }
+
+        this.connections[this.connectionCount++] = connection;
+        this.purged.remove(connection);
+        this.done.lazySet(this.connectionCount);
+    }
+
+    @Override
+    public void connectionPurged(String ip, UUID uuid) {
+        this.purged.add(connection(ip, uuid));
+    }
+
+    private long connection(String ip, UUID uuid) {
+        final int address = this.addressIds.computeIfAbsent(ip, key -> {
+            this.addresses.add(key);
+            return this.addresses.size() - 1;
+        });
+
+        final int player = this.playerIds.computeIfAbsent(uuid, key -> {
+            this.players.add(key);
+            return this.players.size() - 1;
+        });
+
+        return (long) address << 32 | player;
+    }
+
+    public Path getReport() {
+        return this.report;
+    }
+
+    public Phase getPhase() {
+        return this.phase;
+    }
+
+    /**
+     * Gets how much of the current phase is done, out of {@link #getTotal()}.
+     */
+    public long getDone() {
+        return this.done.get();
+    }
+
+    public long getTotal() {
+        return this.total;
+    }
+
+    public int getClusterCount() {
+        return this.clusterCount;
+    }
+
+    public boolean isRunning() {
+        return this.phase == Phase.READING || this.phase == Phase.CLUSTERING || this.phase == Phase.WRITING;
+    }
+
+    public void cancel() {
+        this.cancelled = true;
+    }
+
+    /**
+     * Runs the audit on the calling thread, clustering on a pool with one
+     * thread per core.
+     *
+     * @return {@link Phase#DONE} once the report is written
+     */
+    public Phase run(Storage storage) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+        try {
+            this.total = storage.getConnectionCount().orElse(0);
+
+            if (!storage.forEachConnection(this, () -> this.cancelled)) {
+                return this.phase = this.cancelled ? Phase.CANCELLED : Phase.FAILED;
+            }
+
+            final long[] sorted = pool.submit(this::sortConnections).get();
+
+            // Each address owns the run of connections from its start up to the next one.
+            final int[] starts = addressStarts(sorted);
+            final int runs = starts.length - 1;
+
+            this.done.set(0);
+            this.total = runs;
+            this.phase = Phase.CLUSTERING;
+
+            final int split = Math.max(MIN_ADDRESSES_PER_TASK, runs / pool.getParallelism() + 1);
+            final DisjointSets sets = pool.invoke(new ClusterTask(sorted, starts, 0, runs, split));
+
+            this.phase = Phase.WRITING;
+            write(sorted, starts, sets);
+
+            return this.phase = Phase.DONE;
+        } catch (CancellationException e) {
+            return this.phase = Phase.CANCELLED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return this.phase = Phase.CANCELLED;
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            this.phase = Phase.FAILED;
+
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+
+            throw new IOException("Failed to cluster connections.", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Sorts the connections by address and drops duplicates and purged ones.
+     */
+    private long[] sortConnections() {
+        final long[] connections = Arrays.copyOf(this.connections, this.connectionCount);
+        this.connections = null;
+
+        Arrays.parallelSort(connections);
+
+        int count = 0;
+
+        for (int i = 0; i < connections.length; i++) {
+            if ((i == 0 || connections[i] != connections[i - 1]) && !this.purged.contains(connections[i])) {
+                connections[count++] = connections[i];
+            }
+        }
+
+        return Arrays.copyOf(connections, count);
+    }
+
+    private static int[] addressStarts(long[] sorted) {
+        final int[] starts = new int[sorted.length + 1];
+        int count = 0;
+
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || address(sorted[i]) != address(sorted[i - 1])) {
+                starts[count++] = i;
+            }
+        }
+
+        starts[count++] = sorted.length;
+
+        return Arrays.copyOf(starts, count);
+    }
+
+    private static int address(long connection) {
+        return (int) (connection >>> 32);
+    }
+
+    private static int player(long connection) {
+        return (int) connection;
+    }
+
+    private boolean links(int[] starts, int run) {
+        final int accounts = starts[run + 1] - starts[run];
+
+        return accounts > 1 && accounts <= this.maxAccounts;
+    }
+
+    private void write(long[] sorted, int[] starts, DisjointSets sets) throws IOException {
+        final int playerCount = this.players.size();
+        final int runs = starts.length - 1;
+
+        // Number every set of two or more accounts and gather its members.
+        final int[] clusterOf = new int[playerCount];
+        final List<Integer> roots = new ArrayList<>();
+        Arrays.fill(clusterOf, -1);
+
+        for (int player = 0; player < playerCount; player++) {
+            final int root = sets.find(player);
+
+            if (sets.size(root) > 1 && clusterOf[root] < 0) {
+                clusterOf[root] = roots.size();
+                roots.add(root);
+            }
+        }
+
+        final int clusters = roots.size();
+        final int[][] members = new int[clusters][];
+        final int[] filled = new int[clusters];
+
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            members[cluster] = new int[sets.size(roots.get(cluster))];
+        }
+
+        for (int player = 0; player < playerCount; player++) {
+            final int cluster = clusterOf[sets.find(player)];
+
+            if (cluster >= 0) {
+                members[cluster][filled[cluster]++] = player;
+            }
+        }
+
+        final List<List<Integer>> shared = new ArrayList<>(clusters);
+        int ignored = 0;
+
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            shared.add(new ArrayList<>(2));
+        }
+
+        for (int run = 0; run < runs; run++) {
+            if (links(starts, run)) {
+                shared.get(clusterOf[sets.find(player(sorted[starts[run]]))]).add(run);
+            } else if (starts[run + 1] - starts[run] > this.maxAccounts) {
+                ignored++;
+            }
+        }
+
+        final Integer[] order = new Integer[clusters];
+
+        for (int cluster = 0; cluster < clusters; cluster++) {
+            order[cluster] = cluster;
+        }
+
+        Arrays.sort(order, (a, b) -> {
+            int result = Integer.compare(members[b].length, members[a].length);
+
+            if (result == 0) {
+                result = Integer.compare(shared.get(b).size(), shared.get(a).size());
+            }
+
+            return result != 0 ? result : this.players.get(members[a][0]).compareTo(this.players.get(members[b][0]));
+        });
+
+        this.done.set(0);
+        this.total = clusters;
+        this.clusterCount = clusters;
+
+        Files.createDirectories(this.report.getParent());
+        final Path temp = this.report.resolveSibling(this.report.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            writer.write("IPLog alt audit, " + TIME_FORMATTER.format(LocalDateTime.now()));
+            writer.newLine();
+            writer.write(sorted.length + " connections between " + playerCount + " accounts and " + runs + " addresses.");
+            writer.newLine();
+            writer.write(ignored + " addresses shared by more than " + this.maxAccounts + " accounts were not counted as links.");
+            writer.newLine();
+            writer.write(clusters + " clusters of two or more accounts.");
+            writer.newLine();
+
+            for (int rank = 0; rank < clusters; rank++) {
+                if (this.cancelled) {
+                    throw new CancellationException();
+                }
+
+                final int cluster = order[rank];
+                final int[] accounts = members[cluster];
+                final List<Integer> links = shared.get(cluster);
+
+                writer.newLine();
+                writer.write("#" + (rank + 1) + ": " + accounts.length + " accounts, " + links.size() + " shared addresses");
+                writer.newLine();
+
+                final UUID[] uuids = new UUID[accounts.length];
+
+                for (int i = 0; i < accounts.length; i++) {
+                    uuids[i] = this.players.get(accounts[i]);
+                }
+
+                Arrays.sort(uuids, Comparator.comparing(UUID::toString));
+
+                for (UUID uuid : uuids) {
+                    writer.write("  account " + uuid + this.names.apply(uuid).map(name -> " " + name).orElse(""));
+                    writer.newLine();
+                }
+
+                links.sort((a, b) -> this.addresses.get(address(sorted[starts[a]])).compareTo(this.addresses.get(address(sorted[starts[b]]))));
+
+                for (int run : links) {
+                    writer.write("  address " + this.addresses.get(address(sorted[starts[run]])) + " (" + (starts[run + 1] - starts[run])
+                        + " accounts)");
+                    writer.newLine();
+                }
+
+                this.done.incrementAndGet();
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        Files.move(temp, this.report, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Unions the accounts of a range of addresses, splitting the range in half
+     * until it is small enough.
+     */
+    private final class ClusterTask extends RecursiveTask<DisjointSets> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long[] sorted;
+        private final int[] starts;
+        private final int from;
+        private final int to;
+        private final int split;
+
+        private ClusterTask(long[] sorted, int[] starts, int from, int to, int split) {
+            this.sorted = sorted;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+            this.split = split;
+        }
+
+        @Override
+        protected DisjointSets compute() {
+            if (this.to - this.from > this.split) {
+                final int middle = (this.from + this.to) >>> 1;
+                final ClusterTask left = new ClusterTask(this.sorted, this.starts, this.from, middle, this.split);
+                left.fork();
+
+                final DisjointSets right = new ClusterTask(this.sorted, this.starts, middle, this.to, this.split).compute();
+                final DisjointSets sets = left.join();
+
+                sets.merge(right);
+
+                return sets;
+            }
+
+            final DisjointSets sets = new DisjointSets(AltAudit.this.players.size());
+
+            for (int run = this.from; run < this.to; run++) {
+                if ((run & 1023) == 0 && AltAudit.this.cancelled) {
+                    throw new CancellationException();
+                }
+
+                if (links(this.starts, run)) {
+                    final int first = player(this.sorted[this.starts[run]]);
+
+                    for (int i = this.starts[run] + 1; i < this.starts[run + 1]; i++) {
+                        sets.union(first, player(this.sorted[i]));
+                    }
+                }
+            }
+
+            AltAudit.this.done.addAndGet(this.to - this.from);
+
+            return sets;
+        }
+
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.audit;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over dense ids. A root holds the negated size of its set, every
+ * other id holds its parent.
+ */
+final class DisjointSets {
+
+    private final int[] parents;
+
+    DisjointSets(int size) {
+        this.parents = new int[size];
+        Arrays.fill(this.parents, -1);
+    }
+
+    int find(int id) {
+        int root = id;
+
+        while (this.parents[root] >= 0) {
+            root = this.parents[root];
+        }
+
+        // Point everything on the path straight at the root.
+        while (this.parents[id] >= 0 && this.parents[id] != root) {
+            final int next = this.parents[id];
+            this.parents[id] = root;
+            id = next;
+        }
+
+        return root;
+    }
+
+    void union(int a, int b) {
+        int left = find(a);
+        int right = find(b);
+
+        if (left == right) {
+            return;
+        }
+
+        if (this.parents[left] > this.parents[right]) {
+            final int swap = left;
+            left = right;
+            right = swap;
+        }
+
+        this.parents[left] += this.parents[right];
+        this.parents[right] = left;
+    }
+
+    int size(int root) {
+        return -this.parents[root];
+    }
+
+    /**
+     * Adds every union of the other sets to these sets.
+     */
+    void merge(DisjointSets other) {
+        for (int id = 0; id < this.parents.length; id++) {
+            if (other.parents[id] >= 0) {
+                union(id, other.find(id));
+            }
+        }
+    }
+
+}
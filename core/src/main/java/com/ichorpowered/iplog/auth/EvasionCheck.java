@@ -0,0 +1,167 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.auth;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ichorpowered.iplog.index.AddressIndex;
+import com.ichorpowered.iplog.metrics.LatencyHistogram;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Checks whether a connecting address is shared with a banned account using
+ * only the in-memory address index. Checks that miss the deadline, or that
+ * cannot start because earlier checks are stuck, let the player through.
+ */
+public final class EvasionCheck {
+
+    public enum Outcome {
+        CLEAR,
+        LINKED,
+        TIMED_OUT
+    }
+
+    private static final Result CLEAR = new Result(Outcome.CLEAR, null);
+    private static final Result TIMED_OUT = new Result(Outcome.TIMED_OUT, null);
+
+    private final AddressIndex index;
+    private final Predicate<UUID> banned;
+    private final long deadline;
+    private final ExecutorService executor;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final AtomicLong linked = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+
+    public EvasionCheck(AddressIndex index, Predicate<UUID> banned, long deadline, TimeUnit unit) {
+        this.index = index;
+        this.banned = banned;
+        this.deadline = unit.toNanos(deadline);
+
+        // Idle threads are kept ready so that checks never pay for starting one.
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(2, 4, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+            new ThreadFactoryBuilder().setNameFormat("IPLog Evasion Check %d").setDaemon(true).build());
+        executor.prestartAllCoreThreads();
+
+        this.executor = executor;
+    }
+
+    public Result check(String ip, UUID uuid) {
+        final long start = System.nanoTime();
+        Result result;
+
+        try {
+            final Future<Result> future = this.executor.submit(() -> evaluate(ip, uuid));
+
+            try {
+                result = future.get(this.deadline, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                result = TIMED_OUT;
+            }
+        } catch (RejectedExecutionException | ExecutionException e) {
+            result = TIMED_OUT;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result = TIMED_OUT;
+        }
+
+        this.latency.record(System.nanoTime() - start);
+
+        if (result.getOutcome() == Outcome.LINKED) {
+            this.linked.incrementAndGet();
+        } else if (result.getOutcome() == Outcome.TIMED_OUT) {
+            this.timeouts.incrementAndGet();
+        }
+
+        return result;
+    }
+
+    private Result evaluate(String ip, UUID uuid) {
+        for (UUID account : this.index.getAccounts(ip)) {
+            if (!account.equals(uuid) && this.banned.test(account)) {
+                return new Result(Outcome.LINKED, account);
+            }
+        }
+
+        return CLEAR;
+    }
+
+    public LatencyHistogram getLatency() {
+        return this.latency;
+    }
+
+    public long getLinkedCount() {
+        return this.linked.get();
+    }
+
+    public long getTimeoutCount() {
+        return this.timeouts.get();
+    }
+
+    public long getDeadline(TimeUnit unit) {
+        return unit.convert(this.deadline, TimeUnit.NANOSECONDS);
+    }
+
+    public void shutdown() {
+        this.executor.shutdownNow();
+    }
+
+    public static final class Result {
+
+        private final Outcome outcome;
+        private final UUID account;
+
+        private Result(Outcome outcome, UUID account) {
+            this.outcome = outcome;
+            this.account = account;
+        }
+
+        public Outcome getOutcome() {
+            return this.outcome;
+        }
+
+        /**
+         * The banned account sharing the address, if the outcome is linked.
+         */
+        public Optional<UUID> getLinkedAccount() {
+            return Optional.ofNullable(this.account);
+        }
+
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.burst;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * New accounts that joined from one address or subnet within the window.
+ */
+public final class Burst {
+
+    public enum Scope {
+        ADDRESS,
+        SUBNET
+    }
+
+    private final Scope scope;
+    private final String network;
+    private final List<UUID> accounts;
+    private final Duration span;
+
+    public Burst(Scope scope, String network, List<UUID> accounts, Duration span) {
+        this.scope = scope;
+        this.network = network;
+        this.accounts = accounts;
+        this.span = span;
+    }
+
+    public Scope getScope() {
+        return this.scope;
+    }
+
+    /**
+     * Gets the address, or the subnet in CIDR notation.
+     */
+    public String getNetwork() {
+        return this.network;
+    }
+
+    /**
+     * Gets the accounts in the order they joined.
+     */
+    public List<UUID> getAccounts() {
+        return this.accounts;
+    }
+
+    /**
+     * Gets the time between the first and last join of the burst.
+     */
+    public Duration getSpan() {
+        return this.span;
+    }
+
+}
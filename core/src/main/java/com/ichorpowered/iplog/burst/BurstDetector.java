@@ -0,0 +1,129 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.burst;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Watches new accounts as they join and reports when too many of them come
+ * from one address or subnet within a sliding window. Everything is kept in
+ * fixed size tables, so nothing is read from storage and memory is bounded.
+ */
+public final class BurstDetector {
+
+    private static final int IPV4_PREFIX = 24;
+    private static final int IPV6_PREFIX = 64;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final WindowTable addresses;
+    private final WindowTable subnets;
+
+    /**
+     * Creates a detector that reports {@code addressThreshold} new accounts
+     * from one address, or {@code subnetThreshold} from one /24 or /64,
+     * within the window. A threshold below 2 turns that check off.
+     */
+    public BurstDetector(int slots, long window, TimeUnit unit, int addressThreshold, int subnetThreshold) {
+        final long millis = unit.toMillis(window);
+
+        this.addresses = addressThreshold < 2 ? null : new WindowTable(slots, addressThreshold, millis);
+        this.subnets = subnetThreshold < 2 ? null : new WindowTable(slots, subnetThreshold, millis);
+    }
+
+    /**
+     * Records a join by an account that has never been seen before, and
+     * returns the bursts it completed, if any.
+     */
+    public List<Burst> record(InetAddress ip, UUID uuid, long now) {
+        final byte[] address = ip.getAddress();
+        List<Burst> bursts = Collections.emptyList();
+
+        if (this.addresses != null) {
+            final List<WindowTable.Join> joins = this.addresses.record(HASH.hashBytes(address).asLong(), now, uuid);
+
+            if (!joins.isEmpty()) {
+                bursts = new ArrayList<>(2);
+                bursts.add(burst(Burst.Scope.ADDRESS, ip.getHostAddress(), joins));
+            }
+        }
+
+        if (this.subnets != null) {
+            final int prefix = address.length == 4 ? IPV4_PREFIX : IPV6_PREFIX;
+            final byte[] subnet = Arrays.copyOf(address, prefix / 8);
+            final List<WindowTable.Join> joins = this.subnets.record(HASH.hashBytes(subnet).asLong(), now, uuid);
+
+            if (!joins.isEmpty()) {
+                if (bursts.isEmpty()) {
+                    bursts = new ArrayList<>(1);
+                }
+
+                bursts.add(burst(Burst.Scope.SUBNET, network(address, prefix), joins));
+            }
+        }
+
+        return bursts;
+    }
+
+    private static Burst burst(Burst.Scope scope, String network, List<WindowTable.Join> joins) {
+        final List<UUID> accounts = joins.stream().map(join -> join.uuid).collect(Collectors.toList());
+        final Duration span = Duration.ofMillis(joins.get(joins.size() - 1).time - joins.get(0).time);
+
+        return new Burst(scope, network, Collections.unmodifiableList(accounts), span);
+    }
+
+    private static String network(byte[] address, int prefix) {
+        final byte[] masked = new byte[address.length];
+        System.arraycopy(address, 0, masked, 0, prefix / 8);
+
+        try {
+            return InetAddress.getByAddress(masked).getHostAddress() + "/" + prefix;
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The number of joins that were not counted because every slot they
+     * could use was taken by another recent address or subnet.
+     */
+    public long getDroppedCount() {
+        return (this.addresses == null ? 0 : this.addresses.getDroppedCount()) + (this.subnets == null ? 0 : this.subnets.getDroppedCount());
+    }
+
+}
@@ -0,0 +1,195 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.burst;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed number of slots, each holding a ring buffer of the last few joins
+ * for one key. A slot belongs to a key until all of its joins have left the
+ * window, after which another key may take it over, so memory never grows
+ * no matter how many keys are seen.
+ */
+final class WindowTable {
+
+    private static final int TAG = 0;
+    private static final int CURSOR = 1;
+    private static final int ALERTED = 2;
+    private static final int HEADER = 3;
+
+    // Each join is stored as its time followed by the account.
+    private static final int ENTRY = 3;
+
+    private static final int PROBES = 4;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+    private final int capacity;
+    private final int stride;
+    private final long window;
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Creates a table of at least {@code slots} slots that reports once
+     * {@code capacity} joins of a key fall within {@code window} milliseconds.
+     */
+    WindowTable(int slots, int capacity, long window) {
+        final int size = Integer.highestOneBit(Math.max(PROBES, slots - 1) << 1);
+
+        this.mask = size - 1;
+        this.capacity = capacity;
+        this.stride = HEADER + capacity * ENTRY;
+        this.window = window;
+        this.cells = new AtomicLongArray(size * this.stride);
+    }
+
+    /**
+     * Records a join and returns the joins in the window, oldest first, if
+     * this join filled the key's ring buffer within the window and the key
+     * has not been reported since its window began. Otherwise returns an
+     * empty list.
+     */
+    List<Join> record(long key, long now, UUID uuid) {
+        final long tag = key == 0 ? 1 : key;
+        final int slot = claim(tag, now);
+
+        if (slot < 0) {
+            this.dropped.incrementAndGet();
+            return Collections.emptyList();
+        }
+
+        final long position = this.cells.getAndIncrement(slot + CURSOR);
+        final int entry = slot + HEADER + (int) (position % this.capacity) * ENTRY;
+
+        // The time is written last so a reader never pairs it with a half written account.
+        this.cells.set(entry + 1, uuid.getMostSignificantBits());
+        this.cells.set(entry + 2, uuid.getLeastSignificantBits());
+        this.cells.set(entry, now);
+
+        final long from = now - this.window;
+        final List<Join> joins = new ArrayList<>(this.capacity);
+
+        for (int i = 0; i < this.capacity; i++) {
+            final int offset = slot + HEADER + i * ENTRY;
+            final long time = this.cells.get(offset);
+
+            if (time <= from) {
+                return Collections.emptyList();
+            }
+
+            joins.add(new Join(time, new UUID(this.cells.get(offset + 1), this.cells.get(offset + 2))));
+        }
+
+        final long alerted = this.cells.get(slot + ALERTED);
+
+        if (alerted > from || !this.cells.compareAndSet(slot + ALERTED, alerted, now)) {
+            return Collections.emptyList();
+        }
+
+        joins.sort(null);
+
+        return joins;
+    }
+
+    /**
+     * Finds the key's slot, or takes over an empty or expired one near it.
+     * Returns -1 if every nearby slot is still in use by another key.
+     */
+    private int claim(long tag, long now) {
+        final int home = (int) (tag ^ (tag >>> 32)) & this.mask;
+
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int candidate = -1;
+            long candidateTag = 0;
+
+            for (int probe = 0; probe < PROBES; probe++) {
+                final int slot = ((home + probe) & this.mask) * this.stride;
+                final long current = this.cells.get(slot + TAG);
+
+                if (current == tag) {
+                    return slot;
+                }
+
+                if (candidate < 0 && (current == 0 || isExpired(slot, now))) {
+                    candidate = slot;
+                    candidateTag = current;
+                }
+            }
+
+            if (candidate < 0) {
+                return -1;
+            }
+
+            // Every join left in an expired slot is already outside the window, so only the alert needs resetting.
+            if (this.cells.compareAndSet(candidate + TAG, candidateTag, tag)) {
+                this.cells.set(candidate + ALERTED, 0);
+                return candidate;
+            }
+        }
+
+        return -1;
+    }
+
+    private boolean isExpired(int slot, long now) {
+        final long position = this.cells.get(slot + CURSOR);
+
+        if (position == 0) {
+            return true;
+        }
+
+        final long latest = this.cells.get(slot + HEADER + (int) ((position - 1) % this.capacity) * ENTRY);
+
+        return latest <= now - this.window;
+    }
+
+    long getDroppedCount() {
+        return this.dropped.get();
+    }
+
+    static final class Join implements Comparable<Join> {
+
+        final long time;
+        final UUID uuid;
+
+        Join(long time, UUID uuid) {
+            this.time = time;
+            this.uuid = uuid;
+        }
+
+        @Override
+        public int compareTo(Join other) {
+            return Long.compare(this.time, other.time);
+        }
+
+    }
+
+}
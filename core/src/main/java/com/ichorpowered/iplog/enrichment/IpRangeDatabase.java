@@ -0,0 +1,279 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.enrichment;
+
+import com.google.common.net.InetAddresses;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A read-only, memory-mapped table of sorted address ranges.
+ *
+ * <p>Every address is stored as a 16 byte key (IPv4 addresses are mapped into
+ * ::ffff:0:0/96), so a lookup is a binary search over fixed width records.</p>
+ */
+public final class IpRangeDatabase {
+
+    private static final int MAGIC = 0x49504C52;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 40;
+
+    private static final int FLAG_HOSTING = 1;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final Map<InetAddress, Optional<IpInfo>> cache;
+
+    private IpRangeDatabase(ByteBuffer buffer, int count, int cacheSize) {
+        this.buffer = buffer;
+        this.count = count;
+        this.cache = new LinkedHashMap<InetAddress, Optional<IpInfo>>(cacheSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<InetAddress, Optional<IpInfo>> eldest) {
+                return size() > cacheSize;
+            }
+        };
+    }
+
+    public static IpRangeDatabase open(Path path, int cacheSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an IPLog range database: " + path);
+            }
+
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported range database version " + buffer.getInt(4) + ": " + path);
+            }
+
+            final int count = buffer.getInt(8);
+
+            if ((long) HEADER_SIZE + (long) count * RECORD_SIZE > buffer.limit()) {
+                throw new IOException("Range database is truncated: " + path);
+            }
+
+            return new IpRangeDatabase(buffer, count, cacheSize);
+        }
+    }
+
+    public Optional<IpInfo> lookup(InetAddress address) {
+        synchronized (this.cache) {
+            final Optional<IpInfo> cached = this.cache.get(address);
+
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        final Optional<IpInfo> info = search(toKey(address));
+
+        synchronized (this.cache) {
+            this.cache.put(address, info);
+        }
+
+        return info;
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    private Optional<IpInfo> search(byte[] key) {
+        final ByteBuffer wrapped = ByteBuffer.wrap(key);
+        final long high = wrapped.getLong(0);
+        final long low = wrapped.getLong(8);
+
+        int lo = 0;
+        int hi = this.count - 1;
+        int found = -1;
+
+        // Find the last range starting at or before the key.
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int offset = HEADER_SIZE + mid * RECORD_SIZE;
+
+            if (compare(offset, high, low) <= 0) {
+                found = mid;
+                lo = mid + 1;
+            } else {
+                hi = mid - 1;
+            }
+        }
+
+        if (found < 0) {
+            return Optional.empty();
+        }
+
+        final int offset = HEADER_SIZE + found * RECORD_SIZE;
+
+        if (compare(offset + 16, high, low) < 0) {
+            return Optional.empty();
+        }
+
+        final int asn = this.buffer.getInt(offset + 32);
+        final String country = new String(new byte[] {this.buffer.get(offset + 36), this.buffer.get(offset + 37)}, StandardCharsets.US_ASCII);
+        final boolean hosting = (this.buffer.get(offset + 38) & FLAG_HOSTING) != 0;
+
+        return Optional.of(new IpInfo(asn, country, hosting));
+    }
+
+    private int compare(int offset, long high, long low) {
+        final int result = Long.compareUnsigned(this.buffer.getLong(offset), high);
+
+        return result != 0 ? result : Long.compareUnsigned(this.buffer.getLong(offset + 8), low);
+    }
+
+    public static void write(Path path, List<IpRange> ranges) throws IOException {
+        final List<IpRange> sorted = new ArrayList<>(ranges);
+        sorted.sort((a, b) -> compareKeys(a.getStart(), b.getStart()));
+
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + sorted.size() * RECORD_SIZE);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(sorted.size()).putInt(0);
+
+        for (IpRange range : sorted) {
+            final byte[] country = (range.getInfo().getCountry() + "--").getBytes(StandardCharsets.US_ASCII);
+
+            buffer.put(range.getStart())
+                .put(range.getEnd())
+                .putInt(range.getInfo().getAsn())
+                .put(country[0])
+                .put(country[1])
+                .put((byte) (range.getInfo().isHosting() ? FLAG_HOSTING : 0))
+                .put((byte) 0);
+        }
+
+        buffer.flip();
+
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            channel.force(true);
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Reads ranges from a CSV file with the columns
+     * {@code start,end,asn,country,hosting}. Blank lines and lines starting
+     * with {@code #} are skipped.
+     */
+    public static List<IpRange> readCsv(Path path) throws IOException {
+        final List<IpRange> ranges = new ArrayList<>();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                final String[] columns = line.split(",");
+
+                if (columns.length < 5) {
+                    throw new IOException("Line " + number + " of " + path + " does not have 5 columns.");
+                }
+
+                final InetAddress start;
+                final InetAddress end;
+
+                // Only literals are accepted, as anything else would be looked up in DNS.
+                try {
+                    start = InetAddresses.forString(columns[0].trim());
+                    end = InetAddresses.forString(columns[1].trim());
+                } catch (IllegalArgumentException e) {
+                    throw new IOException("Line " + number + " of " + path + " has an invalid address.", e);
+                }
+
+                try {
+                    ranges.add(new IpRange(start, end,
+                        new IpInfo(Integer.parseInt(columns[2].trim()), columns[3].trim().toUpperCase(Locale.ROOT),
+                            Boolean.parseBoolean(columns[4].trim()) || columns[4].trim().equals("1"))));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Line " + number + " of " + path + " has an invalid ASN.", e);
+                }
+            }
+        }
+
+        return Collections.unmodifiableList(ranges);
+    }
+
+    static byte[] toKey(InetAddress address) {
+        final byte[] raw = address.getAddress();
+
+        if (raw.length == 16) {
+            return raw;
+        }
+
+        final byte[] key = new byte[16];
+        key[10] = (byte) 0xFF;
+        key[11] = (byte) 0xFF;
+        System.arraycopy(raw, 0, key, 12, 4);
+
+        return key;
+    }
+
+    private static int compareKeys(byte[] a, byte[] b) {
+        for (int i = 0; i < 16; i++) {
+            final int result = Integer.compare(a[i] & 0xFF, b[i] & 0xFF);
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return 0;
+    }
+
+}
@@ -0,0 +1,249 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.index;
+
+import com.ichorpowered.iplog.storage.ConnectionListener;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+
+/**
+ * An index of every known connection, so that addresses can be completed and
+ * aliases found without touching storage.
+ *
+ * <p>Most connections live in a memory-mapped {@link IndexSnapshot}, which is
+ * usable as soon as it is opened and costs no heap. Connections recorded and
+ * purged since are kept in a small {@link DeltaLayer} on top of it. Writing a
+ * new snapshot freezes that layer and merges it into the snapshot without
+ * holding up connections recorded in the meantime.</p>
+ */
+public final class AddressIndex implements ConnectionListener {
+
+    private final Object writeLock = new Object();
+
+    private IndexSnapshot base;
+    private DeltaLayer frozen;
+    private DeltaLayer active = new DeltaLayer();
+
+    public AddressIndex() {
+        this(IndexSnapshot.empty());
+    }
+
+    public AddressIndex(IndexSnapshot base) {
+        this.base = base;
+    }
+
+    @Override
+    public void connectionRecorded(String ip, UUID uuid) {
+        add(ip, uuid);
+    }
+
+    @Override
+    public void connectionPurged(String ip, UUID uuid) {
+        remove(ip, uuid);
+    }
+
+    public synchronized void add(String ip, UUID uuid) {
+        this.active.add(ip, uuid);
+    }
+
+    public synchronized void remove(String ip, UUID uuid) {
+        this.active.remove(ip, uuid);
+    }
+
+    public synchronized Set<UUID> getAccounts(String ip) {
+        final Set<UUID> accounts = new HashSet<>();
+        final int index = this.base.findAddress(ip);
+
+        if (index >= 0) {
+            this.base.getAccounts(index, accounts);
+        }
+
+        if (this.frozen != null) {
+            this.frozen.applyAccounts(ip, accounts);
+        }
+
+        this.active.applyAccounts(ip, accounts);
+
+        return accounts;
+    }
+
+    public synchronized Set<String> getAddresses(UUID uuid) {
+        final Set<String> addresses = new HashSet<>();
+        final int index = this.base.findPlayer(uuid);
+
+        if (index >= 0) {
+            this.base.getAddresses(index, addresses);
+        }
+
+        if (this.frozen != null) {
+            this.frozen.applyAddresses(uuid, addresses);
+        }
+
+        this.active.applyAddresses(uuid, addresses);
+
+        return addresses;
+    }
+
+    /**
+     * Gets up to {@code limit} known addresses starting with the prefix, in
+     * lexicographic order.
+     */
+    public synchronized List<String> complete(String prefix, int limit) {
+        final TreeSet<String> candidates = new TreeSet<>();
+
+        // Every address with a tombstone may turn out to be gone, so read past them.
+        final int tombstones = this.active.getTombstonedAddressCount() + (this.frozen == null ? 0 : this.frozen.getTombstonedAddressCount());
+        final int found = this.base.findAddress(prefix);
+        final int start = found < 0 ? -(found + 1) : found;
+
+        for (int i = start; i < this.base.getAddressCount() && i - start < limit + tombstones; i++) {
+            if (!this.base.addressStartsWith(i, prefix)) {
+                break;
+            }
+
+            candidates.add(this.base.getAddress(i));
+        }
+
+        if (this.frozen != null) {
+            candidates.addAll(this.frozen.complete(prefix, limit));
+        }
+
+        candidates.addAll(this.active.complete(prefix, limit));
+
+        final List<String> matches = new ArrayList<>(Math.min(limit, candidates.size()));
+
+        for (String candidate : candidates) {
+            if (matches.size() >= limit) {
+                break;
+            }
+
+            if (!isTombstoned(candidate) || !getAccounts(candidate).isEmpty()) {
+                matches.add(candidate);
+            }
+        }
+
+        return matches;
+    }
+
+    private boolean isTombstoned(String ip) {
+        return this.active.hasTombstones(ip) || this.frozen != null && this.frozen.hasTombstones(ip);
+    }
+
+    /**
+     * Gets up to {@code limit} addresses of the specified player starting with
+     * the prefix, in lexicographic order.
+     */
+    public synchronized List<String> complete(String prefix, UUID uuid, int limit) {
+        final List<String> matches = new ArrayList<>();
+
+        for (String address : getAddresses(uuid)) {
+            if (address.startsWith(prefix)) {
+                matches.add(address);
+            }
+        }
+
+        Collections.sort(matches);
+
+        return matches.size() > limit ? new ArrayList<>(matches.subList(0, limit)) : matches;
+    }
+
+    /**
+     * Gets roughly the number of indexed addresses. Addresses recorded since
+     * the snapshot may be counted twice.
+     */
+    public synchronized int size() {
+        return this.base.getAddressCount() + this.active.size() + (this.frozen == null ? 0 : this.frozen.size());
+    }
+
+    /**
+     * Gets the storage sequence number the snapshot in use was written at,
+     * or -1 if the index was not loaded from a snapshot.
+     */
+    public synchronized long getSequence() {
+        return this.base.getSequence();
+    }
+
+    /**
+     * Whether anything was recorded or purged since the snapshot in use.
+     */
+    public synchronized boolean isChanged() {
+        return !this.active.isEmpty() || this.frozen != null;
+    }
+
+    /**
+     * Writes a new snapshot into the directory and switches to it.
+     *
+     * <p>Every connection written to storage up to {@code sequence} must
+     * already be in the index, so that loading the snapshot and then only the
+     * changes after {@code sequence} gives the same index.</p>
+     */
+    public Path snapshot(Path directory, long sequence) throws IOException {
+        synchronized (this.writeLock) {
+            final IndexSnapshot base;
+            final DeltaLayer frozen;
+
+            synchronized (this) {
+                base = this.base;
+                frozen = this.active;
+
+                this.frozen = frozen;
+                this.active = new DeltaLayer();
+            }
+
+            IndexSnapshot written = null;
+
+            try {
+                final Path path = IndexSnapshot.merge(directory, sequence, base, frozen);
+                written = IndexSnapshot.open(path);
+
+                IndexSnapshot.deleteExcept(directory, path);
+
+                return path;
+            } finally {
+                synchronized (this) {
+                    if (written != null) {
+                        this.base = written;
+                    } else {
+                        // Put the frozen connections back underneath the ones recorded since.
+                        frozen.absorb(this.active);
+                        this.active = frozen;
+                    }
+
+                    this.frozen = null;
+                }
+            }
+        }
+    }
+
+}
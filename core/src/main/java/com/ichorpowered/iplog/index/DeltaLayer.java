@@ -0,0 +1,365 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Connections recorded and purged on top of an {@link IndexSnapshot}.
+ *
+ * <p>Recorded addresses are kept in a radix tree so that they can be completed
+ * alongside the snapshot. Purges are kept as tombstones that hide the
+ * connection in every older layer. A connection is only ever one of the two
+ * in the same layer.</p>
+ */
+final class DeltaLayer {
+
+    private final Node root = new Node();
+    private final Map<UUID, Set<String>> players = new HashMap<>();
+    private final Map<String, Set<UUID>> removed = new HashMap<>();
+    private final Map<UUID, Set<String>> removedByPlayer = new HashMap<>();
+
+    private int size;
+
+    void add(String ip, UUID uuid) {
+        unmark(this.removed, this.removedByPlayer, ip, uuid);
+
+        final Node node = this.root.insert(ip);
+
+        if (node.accounts == null) {
+            node.accounts = new HashSet<>(2);
+            this.size++;
+        }
+
+        node.accounts.add(uuid);
+        this.players.computeIfAbsent(uuid, key -> new HashSet<>(2)).add(ip);
+    }
+
+    void remove(String ip, UUID uuid) {
+        this.removed.computeIfAbsent(ip, key -> new HashSet<>(2)).add(uuid);
+        this.removedByPlayer.computeIfAbsent(uuid, key -> new HashSet<>(2)).add(ip);
+
+        final Set<String> addresses = this.players.get(uuid);
+
+        if (addresses != null && addresses.remove(ip) && addresses.isEmpty()) {
+            this.players.remove(uuid);
+        }
+
+        final Node node = this.root.find(ip);
+
+        if (node == null || node.accounts == null || !node.accounts.remove(uuid) || !node.accounts.isEmpty()) {
+            return;
+        }
+
+        node.accounts = null;
+        this.size--;
+        this.root.prune(ip);
+    }
+
+    private static <K, V> void unmark(Map<K, Set<V>> removed, Map<V, Set<K>> reverse, K key, V value) {
+        final Set<V> values = removed.get(key);
+
+        if (values == null || !values.remove(value)) {
+            return;
+        }
+
+        if (values.isEmpty()) {
+            removed.remove(key);
+        }
+
+        final Set<K> keys = reverse.get(value);
+        keys.remove(key);
+
+        if (keys.isEmpty()) {
+            reverse.remove(value);
+        }
+    }
+
+    /**
+     * Applies this layer to the accounts an older layer has for the address.
+     */
+    void applyAccounts(String ip, Set<UUID> accounts) {
+        final Set<UUID> tombstones = this.removed.get(ip);
+
+        if (tombstones != null) {
+            accounts.removeAll(tombstones);
+        }
+
+        final Node node = this.root.find(ip);
+
+        if (node != null && node.accounts != null) {
+            accounts.addAll(node.accounts);
+        }
+    }
+
+    /**
+     * Applies this layer to the addresses an older layer has for the player.
+     */
+    void applyAddresses(UUID uuid, Set<String> addresses) {
+        final Set<String> tombstones = this.removedByPlayer.get(uuid);
+
+        if (tombstones != null) {
+            addresses.removeAll(tombstones);
+        }
+
+        final Set<String> added = this.players.get(uuid);
+
+        if (added != null) {
+            addresses.addAll(added);
+        }
+    }
+
+    /**
+     * Replays the connections of a newer layer into this one.
+     */
+    void absorb(DeltaLayer newer) {
+        newer.removed.forEach((ip, accounts) -> accounts.forEach(uuid -> remove(ip, uuid)));
+        newer.players.forEach((uuid, addresses) -> addresses.forEach(ip -> add(ip, uuid)));
+    }
+
+    boolean hasTombstones(String ip) {
+        return this.removed.containsKey(ip);
+    }
+
+    int getTombstonedAddressCount() {
+        return this.removed.size();
+    }
+
+    Collection<UUID> getPlayers() {
+        return this.players.keySet();
+    }
+
+    boolean isEmpty() {
+        return this.size == 0 && this.removed.isEmpty();
+    }
+
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Gets up to {@code limit} addresses recorded in this layer starting with
+     * the prefix, in lexicographic order.
+     */
+    List<String> complete(String prefix, int limit) {
+        final List<String> matches = new ArrayList<>(Math.min(limit, 64));
+
+        Node node = this.root;
+        String path = "";
+        String remaining = prefix;
+
+        while (!remaining.isEmpty()) {
+            final int index = node.indexOf(remaining.charAt(0));
+
+            if (index < 0) {
+                return matches;
+            }
+
+            final String label = node.labels[index];
+
+            if (remaining.length() <= label.length()) {
+                if (!label.startsWith(remaining)) {
+                    return matches;
+                }
+            } else if (!remaining.startsWith(label)) {
+                return matches;
+            }
+
+            path += label;
+            remaining = remaining.length() <= label.length() ? "" : remaining.substring(label.length());
+            node = node.children[index];
+        }
+
+        node.collect(path, limit, matches);
+
+        return matches;
+    }
+
+    private static final class Node {
+
+        private static final String[] NO_LABELS = new String[0];
+        private static final Node[] NO_CHILDREN = new Node[0];
+
+        // Children are kept sorted by the first character of their label.
+        private String[] labels = NO_LABELS;
+        private Node[] children = NO_CHILDREN;
+        private Set<UUID> accounts;
+
+        private int indexOf(char first) {
+            int lo = 0;
+            int hi = this.labels.length - 1;
+
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                final char key = this.labels[mid].charAt(0);
+
+                if (key < first) {
+                    lo = mid + 1;
+                } else if (key > first) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+
+            return -(lo + 1);
+        }
+
+        private Node insert(String key) {
+            if (key.isEmpty()) {
+                return this;
+            }
+
+            final int index = indexOf(key.charAt(0));
+
+            if (index < 0) {
+                final Node child = new Node();
+                addChild(-(index + 1), key, child);
+
+                return child;
+            }
+
+            final String label = this.labels[index];
+            final int common = commonPrefix(label, key);
+
+            if (common == label.length()) {
+                return this.children[index].insert(key.substring(common));
+            }
+
+            // Split the edge so that the shared prefix gets its own node.
+            final Node middle = new Node();
+            middle.labels = new String[] {label.substring(common)};
+            middle.children = new Node[] {this.children[index]};
+
+            this.labels[index] = label.substring(0, common);
+            this.children[index] = middle;
+
+            return middle.insert(key.substring(common));
+        }
+
+        private Node find(String key) {
+            if (key.isEmpty()) {
+                return this;
+            }
+
+            final int index = indexOf(key.charAt(0));
+
+            if (index < 0 || !key.startsWith(this.labels[index])) {
+                return null;
+            }
+
+            return this.children[index].find(key.substring(this.labels[index].length()));
+        }
+
+        /**
+         * Removes empty nodes along the path to the key and merges nodes
+         * that were only left with a single child.
+         */
+        private void prune(String key) {
+            if (key.isEmpty()) {
+                return;
+            }
+
+            final int index = indexOf(key.charAt(0));
+
+            if (index < 0 || !key.startsWith(this.labels[index])) {
+                return;
+            }
+
+            final Node child = this.children[index];
+            child.prune(key.substring(this.labels[index].length()));
+
+            if (child.accounts == null && child.children.length == 0) {
+                removeChild(index);
+            } else if (child.accounts == null && child.children.length == 1) {
+                this.labels[index] = this.labels[index] + child.labels[0];
+                this.children[index] = child.children[0];
+            }
+        }
+
+        private void collect(String path, int limit, List<String> matches) {
+            if (matches.size() >= limit) {
+                return;
+            }
+
+            if (this.accounts != null) {
+                matches.add(path);
+            }
+
+            for (int i = 0; i < this.children.length && matches.size() < limit; i++) {
+                this.children[i].collect(path + this.labels[i], limit, matches);
+            }
+        }
+
+        private void addChild(int position, String label, Node child) {
+            final String[] labels = Arrays.copyOf(this.labels, this.labels.length + 1);
+            final Node[] children = Arrays.copyOf(this.children, this.children.length + 1);
+
+            System.arraycopy(labels, position, labels, position + 1, this.labels.length - position);
+            System.arraycopy(children, position, children, position + 1, this.children.length - position);
+
+            labels[position] = label;
+            children[position] = child;
+
+            this.labels = labels;
+            this.children = children;
+        }
+
+        private void removeChild(int position) {
+            final String[] labels = new String[this.labels.length - 1];
+            final Node[] children = new Node[this.children.length - 1];
+
+            System.arraycopy(this.labels, 0, labels, 0, position);
+            System.arraycopy(this.labels, position + 1, labels, position, labels.length - position);
+            System.arraycopy(this.children, 0, children, 0, position);
+            System.arraycopy(this.children, position + 1, children, position, children.length - position);
+
+            this.labels = labels;
+            this.children = children;
+        }
+
+        private static int commonPrefix(String a, String b) {
+            final int max = Math.min(a.length(), b.length());
+            int i = 0;
+
+            while (i < max && a.charAt(i) == b.charAt(i)) {
+                i++;
+            }
+
+            return i;
+        }
+
+    }
+
+}
@@ -0,0 +1,620 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.index;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * A read-only, memory-mapped copy of the address index as of a storage
+ * sequence number.
+ *
+ * <p>Addresses are stored sorted with an offset table into their text, so a
+ * lookup or a prefix completion is a binary search. Players are stored as
+ * sorted 16 byte UUIDs. Each side has an offset table into an array of
+ * indices on the other side, so both directions of a connection are found
+ * without reading anything else.</p>
+ */
+public final class IndexSnapshot {
+
+    private static final int MAGIC = 0x49504C49;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+
+    private static final String PREFIX = "index-";
+    private static final String SUFFIX = ".dat";
+
+    private final ByteBuffer buffer;
+    private final long sequence;
+    private final int addressCount;
+    private final int playerCount;
+    private final int pairCount;
+
+    private final int addressTextOffsets;
+    private final int addressPairOffsets;
+    private final int addressPairs;
+    private final int playerPairOffsets;
+    private final int playerPairs;
+    private final int players;
+    private final int text;
+
+    private IndexSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.sequence = buffer.getLong(8);
+        this.addressCount = buffer.getInt(16);
+        this.playerCount = buffer.getInt(20);
+        this.pairCount = buffer.getInt(24);
+
+        this.addressTextOffsets = HEADER_SIZE;
+        this.addressPairOffsets = this.addressTextOffsets + (this.addressCount + 1) * 4;
+        this.addressPairs = this.addressPairOffsets + (this.addressCount + 1) * 4;
+        this.playerPairOffsets = this.addressPairs + this.pairCount * 4;
+        this.playerPairs = this.playerPairOffsets + (this.playerCount + 1) * 4;
+        this.players = this.playerPairs + this.pairCount * 4;
+        this.text = this.players + this.playerCount * 16;
+    }
+
+    public static IndexSnapshot empty() {
+        final ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + 12);
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, -1);
+
+        return new IndexSnapshot(buffer);
+    }
+
+    public static IndexSnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not an IPLog index snapshot: " + path);
+            }
+
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported index snapshot version " + buffer.getInt(4) + ": " + path);
+            }
+
+            final long addresses = buffer.getInt(16);
+            final long players = buffer.getInt(20);
+            final long pairs = buffer.getInt(24);
+            final long text = buffer.getInt(28);
+
+            if (addresses < 0 || players < 0 || pairs < 0 || text < 0
+                || HEADER_SIZE + (addresses + 1) * 8 + pairs * 8 + (players + 1) * 4 + players * 16 + text != buffer.limit()) {
+                throw new IOException("Index snapshot is truncated: " + path);
+            }
+
+            return new IndexSnapshot(buffer);
+        }
+    }
+
+    /**
+     * Opens the newest snapshot in the directory, if there is one. Older
+     * snapshots are left behind when they could not be deleted while mapped,
+     * so they are cleaned up here.
+     */
+    public static IndexSnapshot openLatest(Path directory) throws IOException {
+        Path latest = null;
+        long latestSequence = -1;
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                final long sequence = sequenceOf(file);
+
+                if (sequence > latestSequence) {
+                    latest = file;
+                    latestSequence = sequence;
+                }
+            }
+        }
+
+        if (latest == null) {
+            return null;
+        }
+
+        deleteExcept(directory, latest);
+
+        return open(latest);
+    }
+
+    private static long sequenceOf(Path file) {
+        final String name = file.getFileName().toString();
+
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static void deleteExcept(Path directory, Path keep) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (!file.equals(keep)) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException ignored) {
+                        // Still mapped on some platforms; the next start will remove it.
+                    }
+                }
+            }
+        } catch (IOException ignored) {
+            // Stale snapshots only cost disk space.
+        }
+    }
+
+    public long getSequence() {
+        return this.sequence;
+    }
+
+    public int getAddressCount() {
+        return this.addressCount;
+    }
+
+    public int getPlayerCount() {
+        return this.playerCount;
+    }
+
+    public int getPairCount() {
+        return this.pairCount;
+    }
+
+    /**
+     * Finds the position of the address, or {@code -(insertion point) - 1}
+     * if it is not in the snapshot.
+     */
+    public int findAddress(String ip) {
+        int lo = 0;
+        int hi = this.addressCount - 1;
+
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int result = compareAddress(mid, ip);
+
+            if (result < 0) {
+                lo = mid + 1;
+            } else if (result > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(lo + 1);
+    }
+
+    public String getAddress(int index) {
+        final int start = this.buffer.getInt(this.addressTextOffsets + index * 4);
+        final int end = this.buffer.getInt(this.addressTextOffsets + (index + 1) * 4);
+        final byte[] bytes = new byte[end - start];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = this.buffer.get(this.text + start + i);
+        }
+
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    public boolean addressStartsWith(int index, String prefix) {
+        final int start = this.buffer.getInt(this.addressTextOffsets + index * 4);
+        final int end = this.buffer.getInt(this.addressTextOffsets + (index + 1) * 4);
+
+        if (end - start < prefix.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < prefix.length(); i++) {
+            if ((this.buffer.get(this.text + start + i) & 0xFF) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    public void getAccounts(int address, Collection<UUID> accounts) {
+        final int start = this.buffer.getInt(this.addressPairOffsets + address * 4);
+        final int end = this.buffer.getInt(this.addressPairOffsets + (address + 1) * 4);
+
+        for (int i = start; i < end; i++) {
+            accounts.add(getPlayer(this.buffer.getInt(this.addressPairs + i * 4)));
+        }
+    }
+
+    public int findPlayer(UUID uuid) {
+        int lo = 0;
+        int hi = this.playerCount - 1;
+
+        while (lo <= hi) {
+            final int mid = (lo + hi) >>> 1;
+            final int result = comparePlayer(mid, uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+
+            if (result < 0) {
+                lo = mid + 1;
+            } else if (result > 0) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+
+        return -(lo + 1);
+    }
+
+    public UUID getPlayer(int index) {
+        final int offset = this.players + index * 16;
+
+        return new UUID(this.buffer.getLong(offset), this.buffer.getLong(offset + 8));
+    }
+
+    public void getAddresses(int player, Collection<String> addresses) {
+        final int start = this.buffer.getInt(this.playerPairOffsets + player * 4);
+        final int end = this.buffer.getInt(this.playerPairOffsets + (player + 1) * 4);
+
+        for (int i = start; i < end; i++) {
+            addresses.add(getAddress(this.buffer.getInt(this.playerPairs + i * 4)));
+        }
+    }
+
+    private int compareAddress(int index, String ip) {
+        final int start = this.buffer.getInt(this.addressTextOffsets + index * 4);
+        final int length = this.buffer.getInt(this.addressTextOffsets + (index + 1) * 4) - start;
+        final int max = Math.min(length, ip.length());
+
+        for (int i = 0; i < max; i++) {
+            final int result = Integer.compare(this.buffer.get(this.text + start + i) & 0xFF, ip.charAt(i));
+
+            if (result != 0) {
+                return result;
+            }
+        }
+
+        return Integer.compare(length, ip.length());
+    }
+
+    // Same order as UUID#compareTo.
+    private int comparePlayer(int index, long most, long least) {
+        final int offset = this.players + index * 16;
+        final int result = Long.compare(this.buffer.getLong(offset), most);
+
+        return result != 0 ? result : Long.compare(this.buffer.getLong(offset + 8), least);
+    }
+
+    /**
+     * Writes a new snapshot into the directory with the connections of the
+     * layer merged into those of the base snapshot.
+     *
+     * <p>Addresses the layer did not touch are copied over as they are, so
+     * mostly the connections recorded or purged since the base cost work.</p>
+     *
+     * @return the path of the new snapshot
+     */
+    static Path merge(Path directory, long sequence, IndexSnapshot base, DeltaLayer layer) throws IOException {
+        final List<UUID> added = new ArrayList<>(layer.getPlayers());
+        Collections.sort(added);
+
+        // Every player of either side in order, and where each player of the base ended up.
+        final long[] players = new long[(base.playerCount + added.size()) * 2];
+        final int[] moved = new int[base.playerCount];
+        int candidates = 0;
+
+        for (int i = 0, j = 0; i < base.playerCount || j < added.size(); candidates++) {
+            final int result = i >= base.playerCount ? 1 : j >= added.size() ? -1
+                : base.comparePlayer(i, added.get(j).getMostSignificantBits(), added.get(j).getLeastSignificantBits());
+
+            if (result <= 0) {
+                players[candidates * 2] = base.buffer.getLong(base.players + i * 16);
+                players[candidates * 2 + 1] = base.buffer.getLong(base.players + i * 16 + 8);
+                moved[i++] = candidates;
+            } else {
+                players[candidates * 2] = added.get(j).getMostSignificantBits();
+                players[candidates * 2 + 1] = added.get(j).getLeastSignificantBits();
+            }
+
+            if (result >= 0) {
+                j++;
+            }
+        }
+
+        final Builder builder = new Builder(players, candidates);
+        final List<String> addresses = layer.complete("", Integer.MAX_VALUE);
+
+        for (int i = 0, j = 0; i < base.addressCount || j < addresses.size(); ) {
+            final String left = i < base.addressCount ? base.getAddress(i) : null;
+            final String right = j < addresses.size() ? addresses.get(j) : null;
+            final int result = left == null ? 1 : right == null ? -1 : left.compareTo(right);
+
+            if (result < 0 && !layer.hasTombstones(left)) {
+                builder.copy(base, i++, moved);
+                continue;
+            }
+
+            final String ip = result <= 0 ? left : right;
+            final Set<UUID> accounts = new HashSet<>();
+
+            if (result <= 0) {
+                base.getAccounts(i++, accounts);
+            }
+
+            if (result >= 0) {
+                j++;
+            }
+
+            layer.applyAccounts(ip, accounts);
+            builder.add(ip, accounts);
+        }
+
+        return builder.write(directory, sequence);
+    }
+
+    private static final class Builder {
+
+        private final long[] players;
+        private final int candidates;
+        private final int[] counts;
+
+        private final Ints textOffsets = new Ints();
+        private final Ints pairOffsets = new Ints();
+        private final Ints pairs = new Ints();
+
+        private byte[] text = new byte[4096];
+        private int textLength;
+
+        private Builder(long[] players, int candidates) {
+            this.players = players;
+            this.candidates = candidates;
+            this.counts = new int[candidates];
+
+            this.textOffsets.add(0);
+            this.pairOffsets.add(0);
+        }
+
+        private void add(String ip, Collection<UUID> accounts) {
+            if (accounts.isEmpty()) {
+                return;
+            }
+
+            final byte[] address = ip.getBytes(StandardCharsets.ISO_8859_1);
+
+            reserve(address.length);
+            System.arraycopy(address, 0, this.text, this.textLength, address.length);
+            this.textLength += address.length;
+            this.textOffsets.add(this.textLength);
+
+            final int start = this.pairs.size;
+
+            for (UUID uuid : accounts) {
+                final int player = search(uuid);
+
+                if (player < 0) {
+                    throw new IllegalArgumentException("Player " + uuid + " of " + ip + " is not in the player list.");
+                }
+
+                this.pairs.add(player);
+                this.counts[player]++;
+            }
+
+            Arrays.sort(this.pairs.values, start, this.pairs.size);
+            this.pairOffsets.add(this.pairs.size);
+        }
+
+        private void copy(IndexSnapshot base, int address, int[] moved) {
+            final int textStart = base.buffer.getInt(base.addressTextOffsets + address * 4);
+            final int textEnd = base.buffer.getInt(base.addressTextOffsets + (address + 1) * 4);
+
+            reserve(textEnd - textStart);
+
+            for (int i = textStart; i < textEnd; i++) {
+                this.text[this.textLength++] = base.buffer.get(base.text + i);
+            }
+
+            this.textOffsets.add(this.textLength);
+
+            final int pairStart = base.buffer.getInt(base.addressPairOffsets + address * 4);
+            final int pairEnd = base.buffer.getInt(base.addressPairOffsets + (address + 1) * 4);
+
+            // Players keep their order when renumbered, so the accounts stay sorted.
+            for (int i = pairStart; i < pairEnd; i++) {
+                final int player = moved[base.buffer.getInt(base.addressPairs + i * 4)];
+
+                this.pairs.add(player);
+                this.counts[player]++;
+            }
+
+            this.pairOffsets.add(this.pairs.size);
+        }
+
+        private void reserve(int length) {
+            if (this.textLength + length > this.text.length) {
+                this.text = Arrays.copyOf(this.text, Math.max(this.text.length * 2, this.textLength + length));
+            }
+        }
+
+        private int search(UUID uuid) {
+            int lo = 0;
+            int hi = this.candidates - 1;
+
+            while (lo <= hi) {
+                final int mid = (lo + hi) >>> 1;
+                int result = Long.compare(this.players[mid * 2], uuid.getMostSignificantBits());
+
+                if (result == 0) {
+                    result = Long.compare(this.players[mid * 2 + 1], uuid.getLeastSignificantBits());
+                }
+
+                if (result < 0) {
+                    lo = mid + 1;
+                } else if (result > 0) {
+                    hi = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+
+            return -1;
+        }
+
+        private Path write(Path directory, long sequence) throws IOException {
+            // Drop players that are left without any connection and renumber the rest.
+            final int[] renumbered = new int[this.candidates];
+            int playerCount = 0;
+
+            for (int i = 0; i < this.candidates; i++) {
+                renumbered[i] = this.counts[i] > 0 ? playerCount++ : -1;
+            }
+
+            final int[] playerOffsets = new int[playerCount + 1];
+
+            for (int i = 0; i < this.candidates; i++) {
+                if (renumbered[i] >= 0) {
+                    playerOffsets[renumbered[i] + 1] = this.counts[i];
+                }
+            }
+
+            for (int i = 0; i < playerCount; i++) {
+                playerOffsets[i + 1] += playerOffsets[i];
+            }
+
+            final int[] pairs = this.pairs.values;
+            final int pairCount = this.pairs.size;
+
+            for (int i = 0; i < pairCount; i++) {
+                pairs[i] = renumbered[pairs[i]];
+            }
+
+            // Addresses are visited in order, so each player's addresses come out sorted.
+            final int addressCount = this.textOffsets.size - 1;
+            final int[] byPlayer = new int[pairCount];
+            final int[] filled = Arrays.copyOf(playerOffsets, playerCount);
+
+            for (int address = 0; address < addressCount; address++) {
+                for (int i = this.pairOffsets.values[address]; i < this.pairOffsets.values[address + 1]; i++) {
+                    byPlayer[filled[pairs[i]]++] = address;
+                }
+            }
+
+            final Path path = directory.resolve(PREFIX + sequence + SUFFIX);
+            final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+                final ByteBuffer buffer = ByteBuffer.allocateDirect(65536);
+
+                buffer.putInt(MAGIC)
+                    .putInt(VERSION)
+                    .putLong(sequence)
+                    .putInt(addressCount)
+                    .putInt(playerCount)
+                    .putInt(pairCount)
+                    .putInt(this.textLength);
+
+                writeInts(channel, buffer, this.textOffsets.values, this.textOffsets.size);
+                writeInts(channel, buffer, this.pairOffsets.values, this.pairOffsets.size);
+                writeInts(channel, buffer, pairs, pairCount);
+                writeInts(channel, buffer, playerOffsets, playerOffsets.length);
+                writeInts(channel, buffer, byPlayer, byPlayer.length);
+
+                for (int i = 0; i < this.candidates; i++) {
+                    if (renumbered[i] >= 0) {
+                        if (buffer.remaining() < 16) {
+                            drain(channel, buffer);
+                        }
+
+                        buffer.putLong(this.players[i * 2]).putLong(this.players[i * 2 + 1]);
+                    }
+                }
+
+                for (int i = 0; i < this.textLength; ) {
+                    if (!buffer.hasRemaining()) {
+                        drain(channel, buffer);
+                    }
+
+                    final int length = Math.min(buffer.remaining(), this.textLength - i);
+                    buffer.put(this.text, i, length);
+                    i += length;
+                }
+
+                drain(channel, buffer);
+                channel.force(true);
+            }
+
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return path;
+        }
+
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values, int length) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < 4) {
+                drain(channel, buffer);
+            }
+
+            buffer.putInt(values[i]);
+        }
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+
+        buffer.clear();
+    }
+
+    private static final class Ints {
+
+        private int[] values = new int[1024];
+        private int size;
+
+        private void add(int value) {
+            if (this.size == this.values.length) {
+                this.values = Arrays.copyOf(this.values, this.values.length * 2);
+            }
+
+            this.values[this.size++] = value;
+        }
+
+    }
+
+}
@@ -0,0 +1,520 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.index;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Every username seen for every account, searchable by any part of a name.
+ *
+ * <p>Names are indexed by their trigrams, plus one anchored at the start so
+ * that two letter prefixes can be found too. A search decodes the shortest
+ * list of names sharing one of its trigrams and checks each of them, so it
+ * only ever touches a small fraction of the names. Everything is kept in flat
+ * arrays, with the trigram lists delta encoded, so millions of names fit in
+ * little memory. Case is ignored for ASCII letters, which is all Minecraft
+ * allows in names.</p>
+ */
+public final class NameIndex {
+
+    public static final int MIN_QUERY = 2;
+
+    private static final int START = 38;
+    private static final int ALPHABET = 39;
+
+    // Names, as UTF-8 in the case they were first seen, stored back to back.
+    private byte[] text = new byte[1 << 16];
+    private int[] textOffsets = new int[1 << 12];
+    private int names;
+    private int[] nameTable = new int[1 << 12];
+
+    private long[] mostBits = new long[1 << 12];
+    private long[] leastBits = new long[1 << 12];
+    private int accounts;
+    private int[] accountTable = new int[1 << 12];
+
+    // One record per account that has used a name, chained by name and by account.
+    private int[] recordName = new int[1 << 12];
+    private int[] recordAccount = new int[1 << 12];
+    private int[] nextForName = new int[1 << 12];
+    private int[] nextForAccount = new int[1 << 12];
+    private int records;
+    private int[] firstForName = new int[1 << 12];
+    private int[] firstForAccount = new int[1 << 12];
+
+    private final byte[][] postings = new byte[ALPHABET * ALPHABET * ALPHABET][];
+    private final int[] postingLengths = new int[ALPHABET * ALPHABET * ALPHABET];
+    private final int[] postingCounts = new int[ALPHABET * ALPHABET * ALPHABET];
+    private final int[] postingLast = new int[ALPHABET * ALPHABET * ALPHABET];
+
+    /**
+     * Records that the account used the name, returning false if that was
+     * already known.
+     */
+    public synchronized boolean add(UUID uuid, String name) {
+        final byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length == 0) {
+            return false;
+        }
+
+        int nameId = findName(bytes);
+
+        if (nameId < 0) {
+            nameId = addName(bytes);
+        }
+
+        int accountId = findAccount(uuid);
+
+        if (accountId < 0) {
+            accountId = addAccount(uuid);
+        } else {
+            for (int record = this.firstForAccount[accountId]; record >= 0; record = this.nextForAccount[record]) {
+                if (this.recordName[record] == nameId) {
+                    return false;
+                }
+            }
+        }
+
+        if (this.records == this.recordName.length) {
+            final int capacity = grow(this.records);
+
+            this.recordName = Arrays.copyOf(this.recordName, capacity);
+            this.recordAccount = Arrays.copyOf(this.recordAccount, capacity);
+            this.nextForName = Arrays.copyOf(this.nextForName, capacity);
+            this.nextForAccount = Arrays.copyOf(this.nextForAccount, capacity);
+        }
+
+        final int record = this.records++;
+
+        this.recordName[record] = nameId;
+        this.recordAccount[record] = accountId;
+        this.nextForName[record] = this.firstForName[nameId];
+        this.nextForAccount[record] = this.firstForAccount[accountId];
+        this.firstForName[nameId] = record;
+        this.firstForAccount[accountId] = record;
+
+        return true;
+    }
+
+    /**
+     * Whether the account is already known by the name.
+     */
+    public synchronized boolean contains(UUID uuid, String name) {
+        final int nameId = findName(name.getBytes(StandardCharsets.UTF_8));
+        final int accountId = nameId < 0 ? -1 : findAccount(uuid);
+
+        if (accountId < 0) {
+            return false;
+        }
+
+        for (int record = this.firstForAccount[accountId]; record >= 0; record = this.nextForAccount[record]) {
+            if (this.recordName[record] == nameId) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Finds accounts that used a name containing the query, or starting with
+     * it if it is shorter than three characters. Exact names come first, then
+     * names starting with the query, then the rest, shortest first.
+     */
+    public synchronized List<Match> search(String query, int limit) {
+        final byte[] needle = lower(query.getBytes(StandardCharsets.UTF_8));
+
+        if (needle.length < MIN_QUERY || limit <= 0) {
+            return Collections.emptyList();
+        }
+
+        final boolean prefixOnly = needle.length < 3;
+        int best = prefixOnly ? gram(START, code(needle[0]), code(needle[1])) : gram(code(needle[0]), code(needle[1]), code(needle[2]));
+
+        if (!prefixOnly) {
+            for (int i = 1; i + 3 <= needle.length; i++) {
+                final int gram = gram(code(needle[i]), code(needle[i + 1]), code(needle[i + 2]));
+
+                if (this.postingCounts[gram] < this.postingCounts[best]) {
+                    best = gram;
+                }
+            }
+        }
+
+        // Matches are packed with their rank and length ahead of the name so that sorting them orders them too.
+        long[] found = new long[16];
+        int count = 0;
+        final byte[] posting = this.postings[best];
+        int position = 0;
+        int nameId = 0;
+
+        for (int i = 0; i < this.postingCounts[best]; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+
+            do {
+                b = posting[position++];
+                delta |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            nameId += delta;
+
+            final int at = indexOf(nameId, needle, prefixOnly);
+
+            if (at >= 0) {
+                final long length = this.textOffsets[nameId + 1] - this.textOffsets[nameId];
+                final long rank = length == needle.length ? 0 : at == 0 ? 1 : 2;
+
+                if (count == found.length) {
+                    found = Arrays.copyOf(found, count << 1);
+                }
+
+                found[count++] = rank << 56 | length << 32 | nameId;
+            }
+        }
+
+        Arrays.sort(found, 0, count);
+
+        final List<Match> matches = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            final int match = (int) found[i];
+
+            for (int record = this.firstForName[match]; record >= 0; record = this.nextForName[record]) {
+                if (matches.size() == limit) {
+                    return matches;
+                }
+
+                final int account = this.recordAccount[record];
+                matches.add(new Match(getName(match), new UUID(this.mostBits[account], this.leastBits[account])));
+            }
+        }
+
+        return matches;
+    }
+
+    /**
+     * Gets every name the account has used, newest first.
+     */
+    public synchronized List<String> getNames(UUID uuid) {
+        final int accountId = findAccount(uuid);
+
+        if (accountId < 0) {
+            return Collections.emptyList();
+        }
+
+        final List<String> names = new ArrayList<>();
+
+        for (int record = this.firstForAccount[accountId]; record >= 0; record = this.nextForAccount[record]) {
+            names.add(getName(this.recordName[record]));
+        }
+
+        return names;
+    }
+
+    public synchronized int size() {
+        return this.records;
+    }
+
+    private String getName(int nameId) {
+        final int offset = this.textOffsets[nameId];
+        return new String(this.text, offset, this.textOffsets[nameId + 1] - offset, StandardCharsets.UTF_8);
+    }
+
+    private int indexOf(int nameId, byte[] needle, boolean prefixOnly) {
+        final int offset = this.textOffsets[nameId];
+        final int last = this.textOffsets[nameId + 1] - needle.length;
+
+        for (int start = offset; start <= (prefixOnly ? Math.min(offset, last) : last); start++) {
+            int i = 0;
+
+            while (i < needle.length && lower(this.text[start + i]) == needle[i]) {
+                i++;
+            }
+
+            if (i == needle.length) {
+                return start - offset;
+            }
+        }
+
+        return -1;
+    }
+
+    private int findName(byte[] bytes) {
+        final int mask = this.nameTable.length - 1;
+
+        for (int slot = hash(bytes, 0, bytes.length) & mask; ; slot = (slot + 1) & mask) {
+            final int entry = this.nameTable[slot];
+
+            if (entry == 0) {
+                return -1;
+            }
+
+            final int nameId = entry - 1;
+            final int offset = this.textOffsets[nameId];
+
+            if (this.textOffsets[nameId + 1] - offset == bytes.length && equalsIgnoreCase(offset, bytes)) {
+                return nameId;
+            }
+        }
+    }
+
+    private boolean equalsIgnoreCase(int offset, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (lower(this.text[offset + i]) != lower(bytes[i])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private int addName(byte[] bytes) {
+        final int nameId = this.names++;
+
+        if (this.names + 1 >= this.textOffsets.length) {
+            this.textOffsets = Arrays.copyOf(this.textOffsets, grow(this.textOffsets.length));
+            this.firstForName = Arrays.copyOf(this.firstForName, this.textOffsets.length);
+        }
+
+        final int offset = this.textOffsets[nameId];
+
+        if (offset + bytes.length > this.text.length) {
+            this.text = Arrays.copyOf(this.text, Math.max(grow(this.text.length), offset + bytes.length));
+        }
+
+        System.arraycopy(bytes, 0, this.text, offset, bytes.length);
+        this.textOffsets[nameId + 1] = offset + bytes.length;
+        this.firstForName[nameId] = -1;
+
+        if (this.names * 2 > this.nameTable.length) {
+            this.nameTable = rehash(this.nameTable, this.nameTable.length << 1, id -> hash(this.text, this.textOffsets[id], this.textOffsets[id + 1]));
+        }
+
+        insert(this.nameTable, hash(bytes, 0, bytes.length), nameId);
+
+        if (bytes.length >= 2) {
+            post(gram(START, code(bytes[0]), code(bytes[1])), nameId);
+        }
+
+        for (int i = 0; i + 3 <= bytes.length; i++) {
+            post(gram(code(bytes[i]), code(bytes[i + 1]), code(bytes[i + 2])), nameId);
+        }
+
+        return nameId;
+    }
+
+    private void post(int gram, int nameId) {
+        final int last = this.postingLast[gram];
+
+        // A name repeating a trigram is only listed once.
+        if (this.postingCounts[gram] > 0 && last == nameId) {
+            return;
+        }
+
+        byte[] posting = this.postings[gram];
+        int length = this.postingLengths[gram];
+
+        if (posting == null) {
+            posting = this.postings[gram] = new byte[8];
+        } else if (length + 5 > posting.length) {
+            posting = this.postings[gram] = Arrays.copyOf(posting, posting.length + (posting.length >> 1) + 5);
+        }
+
+        int delta = this.postingCounts[gram] == 0 ? nameId : nameId - last;
+
+        while ((delta & ~0x7F) != 0) {
+            posting[length++] = (byte) (delta & 0x7F | 0x80);
+            delta >>>= 7;
+        }
+
+        posting[length++] = (byte) delta;
+
+        this.postingLengths[gram] = length;
+        this.postingCounts[gram]++;
+        this.postingLast[gram] = nameId;
+    }
+
+    private int findAccount(UUID uuid) {
+        final long most = uuid.getMostSignificantBits();
+        final long least = uuid.getLeastSignificantBits();
+        final int mask = this.accountTable.length - 1;
+
+        for (int slot = hash(most, least) & mask; ; slot = (slot + 1) & mask) {
+            final int entry = this.accountTable[slot];
+
+            if (entry == 0) {
+                return -1;
+            }
+
+            if (this.mostBits[entry - 1] == most && this.leastBits[entry - 1] == least) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private int addAccount(UUID uuid) {
+        final int accountId = this.accounts++;
+
+        if (this.accounts >= this.mostBits.length) {
+            final int capacity = grow(this.mostBits.length);
+
+            this.mostBits = Arrays.copyOf(this.mostBits, capacity);
+            this.leastBits = Arrays.copyOf(this.leastBits, capacity);
+            this.firstForAccount = Arrays.copyOf(this.firstForAccount, capacity);
+        }
+
+        this.mostBits[accountId] = uuid.getMostSignificantBits();
+        this.leastBits[accountId] = uuid.getLeastSignificantBits();
+        this.firstForAccount[accountId] = -1;
+
+        if (this.accounts * 2 > this.accountTable.length) {
+            this.accountTable = rehash(this.accountTable, this.accountTable.length << 1, id -> hash(this.mostBits[id], this.leastBits[id]));
+        }
+
+        insert(this.accountTable, hash(this.mostBits[accountId], this.leastBits[accountId]), accountId);
+
+        return accountId;
+    }
+
+    private static int grow(int capacity) {
+        return capacity + (capacity >> 1);
+    }
+
+    private static int[] rehash(int[] table, int capacity, IdHash hash) {
+        final int[] rehashed = new int[capacity];
+
+        for (int entry : table) {
+            if (entry != 0) {
+                insert(rehashed, hash.hash(entry - 1), entry - 1);
+            }
+        }
+
+        return rehashed;
+    }
+
+    private static void insert(int[] table, int hash, int id) {
+        final int mask = table.length - 1;
+        int slot = hash & mask;
+
+        while (table[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+
+        table[slot] = id + 1;
+    }
+
+    private static int hash(byte[] bytes, int from, int to) {
+        int hash = 0;
+
+        for (int i = from; i < to; i++) {
+            hash = hash * 31 + lower(bytes[i]);
+        }
+
+        return mix(hash);
+    }
+
+    private static int hash(long most, long least) {
+        final long hash = most ^ least;
+        return mix((int) (hash ^ (hash >>> 32)));
+    }
+
+    private static int mix(int hash) {
+        final int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static byte[] lower(byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = lower(bytes[i]);
+        }
+
+        return bytes;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static int code(byte b) {
+        if (b >= 'a' && b <= 'z') {
+            return b - 'a';
+        }
+
+        if (b >= 'A' && b <= 'Z') {
+            return b - 'A';
+        }
+
+        if (b >= '0' && b <= '9') {
+            return 26 + b - '0';
+        }
+
+        return b == '_' ? 36 : 37;
+    }
+
+    private static int gram(int first, int second, int third) {
+        return (first * ALPHABET + second) * ALPHABET + third;
+    }
+
+    @FunctionalInterface
+    private interface IdHash {
+
+        int hash(int id);
+
+    }
+
+    public static final class Match {
+
+        private final String name;
+        private final UUID uuid;
+
+        Match(String name, UUID uuid) {
+            this.name = name;
+            this.uuid = uuid;
+        }
+
+        /**
+         * Gets the matching name, in the case it was first seen with.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        public UUID getUniqueId() {
+            return this.uuid;
+        }
+
+    }
+
+}
@@ -0,0 +1,356 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.score;
+
+import com.ichorpowered.iplog.api.ChangeSubscriber;
+import com.ichorpowered.iplog.api.ConnectionChange;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToIntFunction;
+
+/**
+ * Scores how likely two accounts are to belong to the same person, from how
+ * often they joined from the same address within a short window of each
+ * other. Each such co-login adds 1 / (accounts on the address - 1), so an
+ * address only the two of them use counts fully and a busy one barely at
+ * all. Scores halve every half-life, so old links fade.
+ *
+ * <p>Scores are kept in a fixed size table fed by the change stream, so
+ * memory is bounded and a lookup never touches storage. When every slot a
+ * pair could use is taken, the weakest of them makes way if it is weaker
+ * than the new co-login.</p>
+ */
+public final class AltScores implements ChangeSubscriber {
+
+    private static final int FORMAT_VERSION = 1;
+
+    // How many recent joins are remembered for each address, and how many addresses are remembered.
+    private static final int RECENT_JOINS = 8;
+    private static final int RECENT_ADDRESSES = 4096;
+
+    private static final int PROBES = 8;
+
+    private final ToIntFunction<InetAddress> accounts;
+    private final long window;
+    private final double halfLife;
+
+    private final Map<InetAddress, long[]> recent = new LinkedHashMap<InetAddress, long[]>(16, 0.75f, true) {
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<InetAddress, long[]> eldest) {
+            return size() > RECENT_ADDRESSES;
+        }
+
+    };
+
+    // Each pair is stored as the two accounts, lowest first, each as its most and least significant bits.
+    private final long[] pairs;
+    private final float[] scores;
+    private final long[] credited;
+    private final int mask;
+
+    private int size;
+    private long dropped;
+
+    /**
+     * Creates scores of at least {@code slots} pairs, counting joins within
+     * {@code window} of each other as co-logins. The number of accounts on
+     * an address is taken from {@code accounts}.
+     */
+    public AltScores(int slots, long window, long halfLife, TimeUnit unit, ToIntFunction<InetAddress> accounts) {
+        final int size = Integer.highestOneBit(Math.max(PROBES, slots - 1) << 1);
+
+        this.accounts = accounts;
+        this.window = unit.toMillis(window);
+        this.halfLife = unit.toMillis(halfLife);
+        this.mask = size - 1;
+        this.pairs = new long[size * 4];
+        this.scores = new float[size];
+        this.credited = new long[size];
+    }
+
+    @Override
+    public void onChange(ConnectionChange change) {
+        // Dropped changes only cost the co-logins they held, so overflows are not handled.
+        if (change.getType() != ConnectionChange.Type.PURGED) {
+            record(change.getIp(), change.getUuid(), change.getTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+        }
+    }
+
+    /**
+     * Records a join, crediting every other account that joined from the
+     * same address within the window.
+     */
+    public synchronized void record(InetAddress ip, UUID uuid, long time) {
+        final long[] joins = this.recent.computeIfAbsent(ip, key -> new long[RECENT_JOINS * 3]);
+        final long most = uuid.getMostSignificantBits();
+        final long least = uuid.getLeastSignificantBits();
+
+        int slot = -1;
+        double weight = -1;
+
+        for (int i = 0; i < RECENT_JOINS; i++) {
+            final int offset = i * 3;
+
+            if (joins[offset + 1] == most && joins[offset + 2] == least) {
+                slot = offset;
+                continue;
+            }
+
+            if (joins[offset] == 0 || Math.abs(time - joins[offset]) >= this.window) {
+                continue;
+            }
+
+            if (weight < 0) {
+                // Both accounts may not have reached the index yet.
+                weight = 1.0 / (Math.max(2, this.accounts.applyAsInt(ip)) - 1);
+            }
+
+            credit(most, least, joins[offset + 1], joins[offset + 2], weight, time);
+        }
+
+        final boolean own = slot >= 0;
+
+        if (!own) {
+            slot = 0;
+
+            for (int offset = 3; offset < joins.length; offset += 3) {
+                if (joins[offset] < joins[slot]) {
+                    slot = offset;
+                }
+            }
+        }
+
+        joins[slot] = own ? Math.max(joins[slot], time) : time;
+        joins[slot + 1] = most;
+        joins[slot + 2] = least;
+    }
+
+    private void credit(long aMost, long aLeast, long bMost, long bLeast, double weight, long time) {
+        final int slot = find(aMost, aLeast, bMost, bLeast, true, weight, time);
+
+        if (slot < 0) {
+            this.dropped++;
+            return;
+        }
+
+        if (this.credited[slot] == 0) {
+            this.scores[slot] = (float) weight;
+            this.credited[slot] = time;
+        } else if (time - this.credited[slot] >= this.window) {
+            // Joins within one window of the last credit belong to the same co-login.
+            this.scores[slot] = (float) (decay(slot, time) + weight);
+            this.credited[slot] = time;
+        }
+    }
+
+    /**
+     * Finds the pair's slot. When inserting, takes an empty slot near it, or
+     * the weakest nearby slot if it scores less than {@code weight} at the
+     * time. Returns -1 if there is none.
+     */
+    private int find(long aMost, long aLeast, long bMost, long bLeast, boolean insert, double weight, long time) {
+        // The pair is ordered so that both accounts find the same slot.
+        if (aMost > bMost || aMost == bMost && aLeast > bLeast) {
+            return find(bMost, bLeast, aMost, aLeast, insert, weight, time);
+        }
+
+        long hash = aMost * 31 + aLeast;
+        hash = (hash * 31 + bMost) * 31 + bLeast;
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+
+        final int home = (int) hash & this.mask;
+        int empty = -1;
+        int weakest = -1;
+        double weakestScore = weight;
+
+        for (int probe = 0; probe < PROBES; probe++) {
+            final int slot = (home + probe) & this.mask;
+
+            if (this.credited[slot] == 0) {
+                if (empty < 0) {
+                    empty = slot;
+                }
+
+                continue;
+            }
+
+            final int offset = slot * 4;
+
+            if (this.pairs[offset] == aMost && this.pairs[offset + 1] == aLeast && this.pairs[offset + 2] == bMost && this.pairs[offset + 3] == bLeast) {
+                return slot;
+            }
+
+            if (insert && empty < 0) {
+                final double score = decay(slot, time);
+
+                if (score < weakestScore) {
+                    weakest = slot;
+                    weakestScore = score;
+                }
+            }
+        }
+
+        final int slot = empty >= 0 ? empty : weakest;
+
+        if (!insert || slot < 0) {
+            return -1;
+        }
+
+        if (this.credited[slot] == 0) {
+            this.size++;
+        }
+
+        final int offset = slot * 4;
+
+        this.pairs[offset] = aMost;
+        this.pairs[offset + 1] = aLeast;
+        this.pairs[offset + 2] = bMost;
+        this.pairs[offset + 3] = bLeast;
+        this.credited[slot] = 0;
+
+        return slot;
+    }
+
+    private double decay(int slot, long time) {
+        return this.scores[slot] * Math.pow(0.5, Math.max(0, time - this.credited[slot]) / this.halfLife);
+    }
+
+    /**
+     * Gets the confidence, from 0 to 1, that the two accounts belong to the
+     * same person.
+     */
+    public synchronized double getConfidence(UUID a, UUID b) {
+        final int slot = find(a.getMostSignificantBits(), a.getLeastSignificantBits(), b.getMostSignificantBits(), b.getLeastSignificantBits(),
+            false, 0, 0);
+
+        return slot < 0 ? 0 : 1 - Math.exp(-decay(slot, System.currentTimeMillis()));
+    }
+
+    /**
+     * Gets the confidence that the account belongs to the same person as
+     * each of the others.
+     */
+    public synchronized Map<UUID, Double> getConfidence(UUID uuid, Collection<UUID> others) {
+        final Map<UUID, Double> confidence = new HashMap<>();
+
+        for (UUID other : others) {
+            confidence.put(other, getConfidence(uuid, other));
+        }
+
+        return confidence;
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    /**
+     * The number of co-logins that were not counted because every slot they
+     * could use held a stronger pair.
+     */
+    public synchronized long getDroppedCount() {
+        return this.dropped;
+    }
+
+    public void save(Path path) throws IOException {
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            synchronized (this) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(this.size);
+
+                for (int slot = 0; slot < this.scores.length; slot++) {
+                    if (this.credited[slot] != 0) {
+                        for (int i = 0; i < 4; i++) {
+                            out.writeLong(this.pairs[slot * 4 + i]);
+                        }
+
+                        out.writeFloat(this.scores[slot]);
+                        out.writeLong(this.credited[slot]);
+                    }
+                }
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Loads saved scores. If the table has shrunk since, the weakest pairs
+     * that no longer fit are left out.
+     */
+    public synchronized void load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported score file version: " + path);
+            }
+
+            final int count = in.readInt();
+            final long now = System.currentTimeMillis();
+
+            for (int i = 0; i < count; i++) {
+                final long aMost = in.readLong();
+                final long aLeast = in.readLong();
+                final long bMost = in.readLong();
+                final long bLeast = in.readLong();
+                final float score = in.readFloat();
+                final long credited = in.readLong();
+
+                final double weight = score * Math.pow(0.5, Math.max(0, now - credited) / this.halfLife);
+                final int slot = find(aMost, aLeast, bMost, bLeast, true, weight, now);
+
+                if (slot >= 0) {
+                    this.scores[slot] = score;
+                    this.credited[slot] = credited;
+                }
+            }
+        }
+    }
+
+}
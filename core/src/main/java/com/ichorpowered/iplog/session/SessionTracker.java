@@ -0,0 +1,80 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.session;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the sessions of online players in memory until they disconnect.
+ */
+public final class SessionTracker {
+
+    private final Map<UUID, Session> open = new ConcurrentHashMap<>();
+
+    public void open(UUID uuid, InetAddress ip, LocalDateTime time) {
+        this.open.put(uuid, new Session(uuid, ip, time));
+    }
+
+    public Optional<Session> close(UUID uuid) {
+        return Optional.ofNullable(this.open.remove(uuid));
+    }
+
+    public List<Session> closeAll() {
+        final List<Session> sessions = new ArrayList<>(this.open.values());
+        this.open.clear();
+
+        return sessions;
+    }
+
+    /**
+     * Groups online players by the address they joined from, keeping only the
+     * addresses shared by more than one of them.
+     */
+    public Map<String, List<UUID>> getSharedAddresses() {
+        final Map<String, List<UUID>> addresses = new HashMap<>();
+
+        for (Session session : this.open.values()) {
+            addresses.computeIfAbsent(session.getIp().getHostAddress(), key -> new ArrayList<>(2)).add(session.getUuid());
+        }
+
+        addresses.values().removeIf(players -> players.size() < 2);
+
+        return addresses;
+    }
+
+    public int size() {
+        return this.open.size();
+    }
+
+}
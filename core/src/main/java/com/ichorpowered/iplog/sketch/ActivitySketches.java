@@ -0,0 +1,187 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.sketch;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+
+/**
+ * Keeps one set of sketches per day for the last {@link #RETENTION_DAYS} days
+ * so that activity reports never have to scan the registry.
+ */
+public final class ActivitySketches {
+
+    public static final int RETENTION_DAYS = 7;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int PRECISION = 14;
+    private static final int TOP_CAPACITY = 256;
+    private static final int EXPECTED_PAIRS = 100_000;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    private final TreeMap<Long, Day> days = new TreeMap<>();
+
+    public synchronized void record(InetAddress ip, UUID uuid, LocalDateTime time) {
+        final long epochDay = time.toLocalDate().toEpochDay();
+        final Day day = this.days.computeIfAbsent(epochDay, key -> new Day());
+        final String address = ip.getHostAddress();
+
+        day.addresses.add(HASH.hashString(address, StandardCharsets.UTF_8).asLong());
+        day.players.add(HASH.hashString(uuid.toString(), StandardCharsets.UTF_8).asLong());
+
+        // Only the first join of an account from an address each day counts towards that address.
+        if (day.pairs.put(address + "/" + uuid)) {
+            day.topAddresses.offer(address);
+        }
+
+        this.days.headMap(epochDay - RETENTION_DAYS + 1).clear();
+    }
+
+    /**
+     * Gets the addresses that were used by the most accounts over the last
+     * {@code window} days. Across several days an account is counted once
+     * for every day it used the address.
+     */
+    public synchronized List<Map.Entry<String, Long>> getTopAddresses(int window, int limit) {
+        final Map<String, Long> counters = new HashMap<>();
+
+        for (Day day : window(window).values()) {
+            day.topAddresses.getCounters().forEach((key, value) -> counters.merge(key, value, Long::sum));
+        }
+
+        return SpaceSaving.top(counters, limit);
+    }
+
+    public synchronized long getDistinctAddresses(int window) {
+        final HyperLogLog merged = new HyperLogLog(PRECISION);
+        window(window).values().forEach(day -> merged.merge(day.addresses));
+
+        return merged.estimate();
+    }
+
+    public synchronized long getDistinctPlayers(int window) {
+        final HyperLogLog merged = new HyperLogLog(PRECISION);
+        window(window).values().forEach(day -> merged.merge(day.players));
+
+        return merged.estimate();
+    }
+
+    private Map<Long, Day> window(int window) {
+        final long today = LocalDate.now().toEpochDay();
+
+        return this.days.subMap(today - Math.min(window, RETENTION_DAYS) + 1, true, today, true);
+    }
+
+    public void save(Path path) throws IOException {
+        final Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            synchronized (this) {
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(this.days.size());
+
+                for (Map.Entry<Long, Day> entry : this.days.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    entry.getValue().addresses.writeTo(out);
+                    entry.getValue().players.writeTo(out);
+                    entry.getValue().topAddresses.writeTo(out);
+                    entry.getValue().pairs.writeTo(out);
+                }
+            }
+        }
+
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public synchronized void load(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported sketch file version: " + path);
+            }
+
+            final int size = in.readInt();
+
+            this.days.clear();
+
+            for (int i = 0; i < size; i++) {
+                final long epochDay = in.readLong();
+                final HyperLogLog addresses = HyperLogLog.readFrom(in);
+                final HyperLogLog players = HyperLogLog.readFrom(in);
+                final SpaceSaving topAddresses = SpaceSaving.readFrom(in);
+                final BloomFilter<CharSequence> pairs = BloomFilter.readFrom(in, Funnels.stringFunnel(StandardCharsets.UTF_8));
+
+                this.days.put(epochDay, new Day(addresses, players, topAddresses, pairs));
+            }
+        }
+    }
+
+    private static final class Day {
+
+        private final HyperLogLog addresses;
+        private final HyperLogLog players;
+        private final SpaceSaving topAddresses;
+        private final BloomFilter<CharSequence> pairs;
+
+        private Day() {
+            this(new HyperLogLog(PRECISION), new HyperLogLog(PRECISION), new SpaceSaving(TOP_CAPACITY),
+                BloomFilter.create(Funnels.stringFunnel(StandardCharsets.UTF_8), EXPECTED_PAIRS, 0.01));
+        }
+
+        private Day(HyperLogLog addresses, HyperLogLog players, SpaceSaving topAddresses, BloomFilter<CharSequence> pairs) {
+            this.addresses = addresses;
+            this.players = players;
+            this.topAddresses = topAddresses;
+            this.pairs = pairs;
+        }
+
+    }
+
+}
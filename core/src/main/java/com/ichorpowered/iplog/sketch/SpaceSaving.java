@@ -0,0 +1,116 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.sketch;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the most frequent keys of a stream in a fixed number of counters.
+ *
+ * <p>A key that is not tracked replaces the smallest counter and inherits its
+ * count, so counts are upper bounds that overestimate by at most the evicted
+ * count.</p>
+ */
+public final class SpaceSaving {
+
+    private final int capacity;
+    private final Map<String, Long> counters;
+
+    public SpaceSaving(int capacity) {
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public void offer(String key) {
+        offer(key, 1);
+    }
+
+    public void offer(String key, long count) {
+        final Long current = this.counters.get(key);
+
+        if (current != null) {
+            this.counters.put(key, current + count);
+            return;
+        }
+
+        if (this.counters.size() < this.capacity) {
+            this.counters.put(key, count);
+            return;
+        }
+
+        String minKey = null;
+        long minCount = Long.MAX_VALUE;
+
+        for (Map.Entry<String, Long> entry : this.counters.entrySet()) {
+            if (entry.getValue() < minCount) {
+                minKey = entry.getKey();
+                minCount = entry.getValue();
+            }
+        }
+
+        this.counters.remove(minKey);
+        this.counters.put(key, minCount + count);
+    }
+
+    public Map<String, Long> getCounters() {
+        return this.counters;
+    }
+
+    public static List<Map.Entry<String, Long>> top(Map<String, Long> counters, int limit) {
+        final List<Map.Entry<String, Long>> entries = new ArrayList<>(counters.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+
+        return entries.size() > limit ? new ArrayList<>(entries.subList(0, limit)) : entries;
+    }
+
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(this.capacity);
+        out.writeInt(this.counters.size());
+
+        for (Map.Entry<String, Long> entry : this.counters.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+
+    public static SpaceSaving readFrom(DataInput in) throws IOException {
+        final SpaceSaving sketch = new SpaceSaving(in.readInt());
+        final int size = in.readInt();
+
+        for (int i = 0; i < size; i++) {
+            sketch.counters.put(in.readUTF(), in.readLong());
+        }
+
+        return sketch;
+    }
+
+}
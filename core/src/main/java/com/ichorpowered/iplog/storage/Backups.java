@@ -0,0 +1,130 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A directory of compressed storage backups, of which only the newest are
+ * kept. Backups are written under a temporary name and only appear once
+ * they are complete.
+ */
+public final class Backups {
+
+    private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final String PREFIX = "storage-";
+    private static final String SUFFIX = ".zip";
+
+    private final Path directory;
+    private final int keep;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public Backups(Path directory, int keep) {
+        this.directory = directory;
+        this.keep = Math.max(1, keep);
+    }
+
+    /**
+     * Creates a backup with the writer and removes the oldest backups beyond
+     * the number to keep. Empty if another backup is still running or the
+     * writer failed.
+     */
+    public Optional<Path> create(Writer writer) throws IOException {
+        if (!this.running.compareAndSet(false, true)) {
+            return Optional.empty();
+        }
+
+        try {
+            Files.createDirectories(this.directory);
+
+            final Path target = this.directory.resolve(PREFIX + NAME_FORMATTER.format(LocalDateTime.now()) + SUFFIX);
+            final Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+            Files.deleteIfExists(temp);
+
+            if (!writer.write(temp)) {
+                Files.deleteIfExists(temp);
+                return Optional.empty();
+            }
+
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            final List<Path> backups = list();
+
+            for (Path old : backups.subList(Math.min(this.keep, backups.size()), backups.size())) {
+                Files.deleteIfExists(old);
+            }
+
+            return Optional.of(target);
+        } finally {
+            this.running.set(false);
+        }
+    }
+
+    /**
+     * Gets every complete backup, newest first.
+     */
+    public List<Path> list() throws IOException {
+        if (!Files.isDirectory(this.directory)) {
+            return new ArrayList<>();
+        }
+
+        try (Stream<Path> files = Files.list(this.directory)) {
+            final List<Path> backups = files
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX) && path.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+
+            Collections.reverse(backups);
+
+            return backups;
+        }
+    }
+
+    public boolean isRunning() {
+        return this.running.get();
+    }
+
+    @FunctionalInterface
+    public interface Writer {
+
+        boolean write(Path target);
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops calls to storage after repeated failures or slow calls, and lets a
+ * single probe through once the open period has passed.
+ */
+public final class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int failureThreshold;
+    private final long latencyThreshold;
+    private final long openDuration;
+
+    private State state = State.CLOSED;
+    private int failures;
+    private long openedAt;
+    private boolean held;
+
+    public CircuitBreaker(int failureThreshold, long latencyThreshold, long openDuration, TimeUnit unit) {
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.latencyThreshold = unit.toNanos(latencyThreshold);
+        this.openDuration = unit.toNanos(openDuration);
+    }
+
+    public synchronized boolean allowRequest() {
+        if (this.held) {
+            return false;
+        }
+
+        switch (this.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.nanoTime() - this.openedAt >= this.openDuration) {
+                    this.state = State.HALF_OPEN;
+                    return true;
+                }
+
+                return false;
+            default:
+                // Only one probe may be in flight while half open.
+                return false;
+        }
+    }
+
+    public synchronized void recordSuccess(long elapsedNanos) {
+        if (elapsedNanos > this.latencyThreshold) {
+            recordFailure();
+            return;
+        }
+
+        this.failures = 0;
+        this.state = State.CLOSED;
+    }
+
+    public synchronized void recordFailure() {
+        this.failures++;
+
+        if (this.state == State.HALF_OPEN || this.failures >= this.failureThreshold) {
+            this.state = State.OPEN;
+            this.openedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Records a call that says nothing about the health of storage, such as
+     * a lookup turned away while staff are busy. If it was the probe, the
+     * next call becomes the probe instead.
+     */
+    public synchronized void recordInconclusive() {
+        if (this.state == State.HALF_OPEN) {
+            this.state = State.OPEN;
+        }
+    }
+
+    /**
+     * Keeps the breaker open until {@link #resume()}, regardless of how
+     * storage is doing, so that maintenance can have storage to itself.
+     */
+    public synchronized void hold() {
+        this.held = true;
+    }
+
+    public synchronized void resume() {
+        this.held = false;
+    }
+
+    public synchronized State getState() {
+        return this.held ? State.OPEN : this.state;
+    }
+
+}
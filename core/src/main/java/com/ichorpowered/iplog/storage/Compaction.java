@@ -0,0 +1,68 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * The outcome of compacting the storage file.
+ */
+public final class Compaction {
+
+    private final LocalDateTime time;
+    private final FileStats before;
+    private final FileStats after;
+    private final Duration elapsed;
+
+    public Compaction(LocalDateTime time, FileStats before, FileStats after, Duration elapsed) {
+        this.time = time;
+        this.before = before;
+        this.after = after;
+        this.elapsed = elapsed;
+    }
+
+    public LocalDateTime getTime() {
+        return this.time;
+    }
+
+    public FileStats getBefore() {
+        return this.before;
+    }
+
+    public FileStats getAfter() {
+        return this.after;
+    }
+
+    /**
+     * Gets how long storage was unavailable, during which writes went to
+     * the journal.
+     */
+    public Duration getElapsed() {
+        return this.elapsed;
+    }
+
+}
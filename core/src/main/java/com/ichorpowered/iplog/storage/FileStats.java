@@ -0,0 +1,69 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+/**
+ * The size of the storage file and how much of it still holds live data.
+ */
+public final class FileStats {
+
+    private final long size;
+    private final int fillRate;
+
+    public FileStats(long size, int fillRate) {
+        this.size = size;
+        this.fillRate = fillRate;
+    }
+
+    /**
+     * Gets the size of the file in bytes.
+     */
+    public long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Gets the percentage of the file taken up by live data. The rest is
+     * old versions of rows and free space that only compaction gives back.
+     */
+    public int getFillRate() {
+        return this.fillRate;
+    }
+
+    /**
+     * Adds the stats of another file, as if they were one.
+     */
+    public FileStats plus(FileStats other) {
+        final long size = this.size + other.size;
+        return new FileStats(size, size == 0 ? 100 : (int) ((this.size * this.fillRate + other.size * other.fillRate) / size));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%.1fMB (%d%% live)", this.size / (1024.0 * 1024.0), this.fillRate);
+    }
+
+}
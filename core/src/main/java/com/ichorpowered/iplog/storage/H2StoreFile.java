@@ -0,0 +1,100 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.MVStore;
+import org.h2.mvstore.db.MVTableEngine;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Reaches the MVStore behind an embedded H2 connection. H2 has no statement
+ * that compacts the file while the database stays open, so this is the only
+ * way to do it without closing every pooled connection.
+ *
+ * <p>These are H2 internals, which may differ in the version the server
+ * provides. Once any of them fails to link, the file is treated as if it
+ * were not an MVStore.</p>
+ */
+final class H2StoreFile implements StoreFile {
+
+    private volatile boolean unsupported;
+
+    @Override
+    public FileStats measure(Connection conn) throws SQLException {
+        try {
+            final MVTableEngine.Store store = store(conn);
+
+            return store == null ? null : stats(store.getStore());
+        } catch (LinkageError e) {
+            this.unsupported = true;
+            return null;
+        }
+    }
+
+    @Override
+    public void compact(Connection conn, long budgetMillis) throws SQLException {
+        try {
+            final MVTableEngine.Store store = store(conn);
+
+            if (store == null) {
+                return;
+            }
+
+            // Compacting drops the retention time so that freed chunks can be reused straight away.
+            final int retention = store.getStore().getRetentionTime();
+
+            try {
+                store.compactFile(budgetMillis);
+            } finally {
+                store.getStore().setRetentionTime(retention);
+                store.getStore().sync();
+            }
+        } catch (LinkageError e) {
+            this.unsupported = true;
+        }
+    }
+
+    private MVTableEngine.Store store(Connection conn) throws SQLException {
+        if (this.unsupported || !conn.isWrapperFor(JdbcConnection.class)) {
+            return null;
+        }
+
+        final SessionInterface session = conn.unwrap(JdbcConnection.class).getSession();
+
+        return session instanceof Session ? ((Session) session).getDatabase().getMvStore() : null;
+    }
+
+    private static FileStats stats(MVStore store) {
+        // Chunks are only as full as their live pages, and the file only as full as its chunks.
+        return new FileStats(store.getFileStore().size(), store.getFileStore().getFillRate() * store.getCurrentFillRate() / 100);
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.UUID;
+
+public final class JournalEntry {
+
+    public enum Type {
+        ADD,
+        UPDATE,
+        PURGE
+    }
+
+    private final Type type;
+    private final String ip;
+    private final UUID uuid;
+    private final LocalDateTime time;
+
+    public JournalEntry(Type type, String ip, UUID uuid, LocalDateTime time) {
+        this.type = type;
+        this.ip = ip;
+        this.uuid = uuid;
+        this.time = time;
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    public String getIp() {
+        return this.ip;
+    }
+
+    public UUID getUuid() {
+        return this.uuid;
+    }
+
+    public LocalDateTime getTime() {
+        return this.time;
+    }
+
+    String serialize() {
+        return this.type.name() + " " + this.ip + " " + this.uuid + " "
+            + this.time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static JournalEntry deserialize(String line) {
+        final String[] parts = line.split(" ");
+
+        if (parts.length != 4) {
+            throw new IllegalArgumentException("Malformed journal entry: " + line);
+        }
+
+        return new JournalEntry(Type.valueOf(parts[0]), parts[1], UUID.fromString(parts[2]),
+            LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(parts[3])), ZoneId.systemDefault()));
+    }
+
+}
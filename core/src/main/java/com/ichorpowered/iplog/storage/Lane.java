@@ -0,0 +1,137 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import com.ichorpowered.iplog.metrics.LatencyHistogram;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * A capped share of storage connections. Callers wait for a permit before
+ * borrowing a connection, so one kind of work can never take every
+ * connection, and the time spent waiting is recorded.
+ */
+public final class Lane {
+
+    private final DataSource dataSource;
+    private final int size;
+    private final Semaphore permits;
+    private final long maxWait;
+    private final long queryTimeout;
+
+    private final LatencyHistogram waits = new LatencyHistogram();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * Creates a lane of the specified size. A caller gives up after waiting
+     * {@code maxWait} for a permit, and statements that are expected to be
+     * quick are cancelled after {@code queryTimeout}, or never if it is 0.
+     */
+    public Lane(DataSource dataSource, int size, long maxWait, long queryTimeout, TimeUnit unit) {
+        this.dataSource = dataSource;
+        this.size = Math.max(1, size);
+        this.permits = new Semaphore(this.size, true);
+        this.maxWait = unit.toNanos(maxWait);
+        this.queryTimeout = unit.toMillis(Math.max(0, queryTimeout));
+    }
+
+    /**
+     * Waits for a permit, returning false if none became free in time. Every
+     * successful call must be followed by {@link #release()}.
+     */
+    public boolean acquire() {
+        final long start = System.nanoTime();
+
+        try {
+            if (this.permits.tryAcquire(this.maxWait, TimeUnit.NANOSECONDS)) {
+                this.waits.record(System.nanoTime() - start);
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        this.rejected.incrementAndGet();
+
+        return false;
+    }
+
+    public void release() {
+        this.permits.release();
+    }
+
+    /**
+     * Waits for every call in the lane to finish and keeps new ones out until
+     * {@link #restore()}, returning false if the lane did not empty in time.
+     */
+    public boolean drain(long timeout, TimeUnit unit) {
+        try {
+            return this.permits.tryAcquire(this.size, timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    public void restore() {
+        this.permits.release(this.size);
+    }
+
+    public Connection getConnection() throws SQLException {
+        return this.dataSource.getConnection();
+    }
+
+    public int getSize() {
+        return this.size;
+    }
+
+    public int getInUse() {
+        return this.size - this.permits.availablePermits();
+    }
+
+    public int getQueued() {
+        return this.permits.getQueueLength();
+    }
+
+    public long getQueryTimeout(TimeUnit unit) {
+        return unit.convert(this.queryTimeout, TimeUnit.MILLISECONDS);
+    }
+
+    public LatencyHistogram getWaits() {
+        return this.waits;
+    }
+
+    public long getRejectedCount() {
+        return this.rejected.get();
+    }
+
+}
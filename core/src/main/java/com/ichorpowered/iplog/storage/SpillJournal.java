@@ -0,0 +1,140 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An append-only file of connection writes that could not reach storage.
+ *
+ * <p>Every append is forced to disk before it returns, and entries stay in
+ * the journal until {@link #commit(int)} confirms they were replayed.</p>
+ */
+public final class SpillJournal {
+
+    private final Path path;
+    private final List<JournalEntry> pending = new ArrayList<>();
+
+    private FileChannel channel;
+
+    public SpillJournal(Path path) throws IOException {
+        this.path = path;
+
+        if (Files.exists(path)) {
+            try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        this.pending.add(JournalEntry.deserialize(line));
+                    } catch (IllegalArgumentException e) {
+                        // A torn final write from a crash; everything before it is intact.
+                        break;
+                    }
+                }
+            }
+
+            rewrite();
+        }
+
+        this.channel = open();
+    }
+
+    private FileChannel open() throws IOException {
+        return FileChannel.open(this.path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    public synchronized void append(JournalEntry entry) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.wrap((entry.serialize() + "\n").getBytes(StandardCharsets.UTF_8));
+
+        while (buffer.hasRemaining()) {
+            this.channel.write(buffer);
+        }
+
+        this.channel.force(false);
+        this.pending.add(entry);
+    }
+
+    public synchronized List<JournalEntry> peek(int max) {
+        return new ArrayList<>(this.pending.subList(0, Math.min(max, this.pending.size())));
+    }
+
+    public synchronized List<JournalEntry> getPending() {
+        return new ArrayList<>(this.pending);
+    }
+
+    public synchronized boolean isEmpty() {
+        return this.pending.isEmpty();
+    }
+
+    public synchronized int size() {
+        return this.pending.size();
+    }
+
+    /**
+     * Removes the oldest {@code count} entries once they have been replayed.
+     */
+    public synchronized void commit(int count) throws IOException {
+        this.pending.subList(0, Math.min(count, this.pending.size())).clear();
+
+        this.channel.close();
+        rewrite();
+        this.channel = open();
+    }
+
+    private void rewrite() throws IOException {
+        final Path temp = this.path.resolveSibling(this.path.getFileName() + ".tmp");
+
+        try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (JournalEntry entry : this.pending) {
+                writer.write(entry.serialize());
+                writer.write('\n');
+            }
+        }
+
+        try (FileChannel temporary = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            temporary.force(true);
+        }
+
+        Files.move(temp, this.path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void close() throws IOException {
+        this.channel.close();
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.storage;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Measures and compacts the file behind a storage connection, where the
+ * database allows it. Only H2's embedded MVStore does, and H2 is provided
+ * by the server, so its classes are only touched once they are known to be
+ * there.
+ */
+public interface StoreFile {
+
+    /**
+     * Measures the file behind the connection, or returns null if it is not
+     * an embedded MVStore.
+     */
+    FileStats measure(Connection conn) throws SQLException;
+
+    /**
+     * Compacts the file behind the connection for up to the budget, or does
+     * nothing if it is not an embedded MVStore. Nothing else may use the
+     * database meanwhile, as chunks are moved under any concurrent reader.
+     */
+    void compact(Connection conn, long budgetMillis) throws SQLException;
+
+    /**
+     * Gets access to H2 store files if H2 is available, or else access that
+     * measures and compacts nothing.
+     */
+    static StoreFile load() {
+        try {
+            Class.forName("org.h2.jdbc.JdbcConnection", false, StoreFile.class.getClassLoader());
+
+            return new H2StoreFile();
+        } catch (ClassNotFoundException | LinkageError e) {
+            return new StoreFile() {
+
+                @Override
+                public FileStats measure(Connection conn) {
+                    return null;
+                }
+
+                @Override
+                public void compact(Connection conn, long budgetMillis) {
+                }
+
+            };
+        }
+    }
+
+}
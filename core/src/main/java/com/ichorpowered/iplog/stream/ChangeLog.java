@@ -0,0 +1,210 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.stream;
+
+import com.ichorpowered.iplog.api.ChangeSubscriber;
+import com.ichorpowered.iplog.api.ConnectionChange;
+import org.slf4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Appends every change to {@code changes.ndjson} as one JSON object per line,
+ * for other processes to tail. Once the file reaches the maximum size it is
+ * renamed with the time and a new one is started, and only the newest of the
+ * renamed files are kept.
+ *
+ * <p>Lines are flushed whenever the stream goes idle, so a reader only ever
+ * sees whole lines. A line of type {@code overflow} stands in for changes
+ * that were dropped, after which the reader should resynchronise from
+ * storage.</p>
+ */
+public final class ChangeLog implements ChangeSubscriber {
+
+    private static final DateTimeFormatter NAME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final String CURRENT = "changes.ndjson";
+    private static final String PREFIX = "changes-";
+    private static final String SUFFIX = ".ndjson";
+
+    private final Path directory;
+    private final long maxSize;
+    private final int keep;
+    private final Logger logger;
+
+    private Writer writer;
+    private long size;
+
+    public ChangeLog(Path directory, long maxSize, int keep, Logger logger) {
+        this.directory = directory;
+        this.maxSize = Math.max(1024, maxSize);
+        this.keep = Math.max(0, keep);
+        this.logger = logger;
+    }
+
+    @Override
+    public void onChange(ConnectionChange change) {
+        write("{\"seq\":" + change.getSequence()
+            + ",\"type\":\"" + change.getType().name().toLowerCase(Locale.ROOT)
+            + "\",\"ip\":\"" + change.getIp().getHostAddress()
+            + "\",\"uuid\":\"" + change.getUuid()
+            + "\",\"time\":\"" + DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(change.getTime().atZone(ZoneId.systemDefault())) + "\"}");
+    }
+
+    @Override
+    public void onOverflow(long dropped) {
+        write("{\"type\":\"overflow\",\"dropped\":" + dropped + "}");
+    }
+
+    @Override
+    public void onIdle() {
+        if (this.writer == null) {
+            return;
+        }
+
+        try {
+            this.writer.flush();
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    @Override
+    public void onComplete() {
+        if (this.writer == null) {
+            return;
+        }
+
+        try {
+            this.writer.close();
+        } catch (IOException e) {
+            this.logger.error("Failed to close the change file.");
+            e.printStackTrace();
+        }
+
+        this.writer = null;
+    }
+
+    private void write(String line) {
+        try {
+            if (this.writer != null && this.size >= this.maxSize) {
+                rotate();
+            }
+
+            if (this.writer == null) {
+                open();
+            }
+
+            this.writer.write(line);
+            this.writer.write('\n');
+
+            // Everything written is ASCII, so characters are bytes.
+            this.size += line.length() + 1;
+        } catch (IOException e) {
+            failed(e);
+        }
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(this.directory);
+
+        final Path current = this.directory.resolve(CURRENT);
+
+        this.writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(current,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE), StandardCharsets.US_ASCII), 1 << 16);
+        this.size = Files.size(current);
+    }
+
+    private void rotate() throws IOException {
+        this.writer.close();
+        this.writer = null;
+
+        final String name = PREFIX + NAME_FORMATTER.format(LocalDateTime.now());
+        Path target = this.directory.resolve(name + SUFFIX);
+
+        for (int i = 1; Files.exists(target); i++) {
+            target = this.directory.resolve(name + "-" + i + SUFFIX);
+        }
+
+        Files.move(this.directory.resolve(CURRENT), target);
+
+        final List<Path> rotated = list();
+
+        for (Path old : rotated.subList(Math.min(this.keep, rotated.size()), rotated.size())) {
+            Files.deleteIfExists(old);
+        }
+    }
+
+    /**
+     * Gets every rotated file, newest first.
+     */
+    private List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(this.directory)) {
+            final List<Path> rotated = files
+                .filter(path -> path.getFileName().toString().startsWith(PREFIX) && path.getFileName().toString().endsWith(SUFFIX))
+                .sorted()
+                .collect(Collectors.toList());
+
+            Collections.reverse(rotated);
+
+            return rotated;
+        }
+    }
+
+    /**
+     * Drops the file after a failure, so the next change reopens it rather
+     * than writing after a partial line.
+     */
+    private void failed(IOException e) {
+        this.logger.error("Failed to write to the change file.");
+        e.printStackTrace();
+
+        if (this.writer != null) {
+            try {
+                this.writer.close();
+            } catch (IOException ignored) {
+                // The failure has been reported already.
+            }
+
+            this.writer = null;
+        }
+    }
+
+}
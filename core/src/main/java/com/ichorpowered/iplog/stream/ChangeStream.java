@@ -0,0 +1,283 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.stream;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.ichorpowered.iplog.api.ChangeSubscriber;
+import com.ichorpowered.iplog.api.ChangeSubscription;
+import com.ichorpowered.iplog.api.ConnectionChange;
+import org.slf4j.Logger;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands every committed connection change to the subscribers.
+ *
+ * <p>Changes are published from the write path, which joins run on, so
+ * publishing never waits. Each subscriber has a bounded queue drained by a
+ * thread of its own, so a slow subscriber only holds itself up. Once its
+ * queue is full, further changes are dropped for it alone and counted, and
+ * it is told how many it missed before it receives the next one.</p>
+ */
+public final class ChangeStream {
+
+    private static final ThreadFactory THREADS = new ThreadFactoryBuilder().setNameFormat("IPLog Change Stream %d").setDaemon(true).build();
+
+    private static final Delivery END = new Delivery(null, 0);
+    private static final long CANCEL_TIMEOUT = 5;
+
+    private final Logger logger;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    private long sequence;
+
+    public ChangeStream(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Subscribes to every change published from now on, queueing at most
+     * {@code capacity} changes for the subscriber.
+     */
+    public ChangeSubscription subscribe(ChangeSubscriber subscriber, int capacity) {
+        final Subscription subscription = new Subscription(subscriber, Math.max(1, capacity));
+
+        this.subscriptions.add(subscription);
+        subscription.thread.start();
+
+        return subscription;
+    }
+
+    public void publish(ConnectionChange.Type type, String ip, UUID uuid, LocalDateTime time) {
+        if (this.subscriptions.isEmpty()) {
+            return;
+        }
+
+        final InetAddress address;
+
+        try {
+            address = InetAddress.getByName(ip);
+        } catch (UnknownHostException e) {
+            // Stored addresses are always literals, so this cannot resolve anything.
+            return;
+        }
+
+        // Numbering and queueing together keeps every subscriber in the same order.
+        synchronized (this) {
+            final ConnectionChange change = new ConnectionChange(++this.sequence, type, address, uuid, time);
+
+            for (Subscription subscription : this.subscriptions) {
+                subscription.offer(change);
+            }
+        }
+    }
+
+    public List<? extends ChangeSubscription> getSubscriptions() {
+        return this.subscriptions;
+    }
+
+    private final class Subscription implements ChangeSubscription, Runnable {
+
+        private final ChangeSubscriber subscriber;
+        private final BlockingQueue<Delivery> queue;
+        private final Thread thread;
+        private final AtomicLong dropped = new AtomicLong();
+
+        private long gap;
+        private volatile boolean cancelled;
+
+        Subscription(ChangeSubscriber subscriber, int capacity) {
+            this.subscriber = subscriber;
+            this.queue = new ArrayBlockingQueue<>(capacity + 2);
+            this.thread = THREADS.newThread(this);
+        }
+
+        /**
+         * Queues the change, or counts it as dropped. One place is kept free
+         * so the count of a run of dropped changes can always be queued ahead
+         * of the next change that fits, and another for the end of the
+         * subscription.
+         */
+        void offer(ConnectionChange change) {
+            if (this.cancelled) {
+                return;
+            }
+
+            if (this.queue.remainingCapacity() < 3) {
+                this.gap++;
+                this.dropped.incrementAndGet();
+                return;
+            }
+
+            if (this.gap > 0) {
+                this.queue.add(new Delivery(null, this.gap));
+                this.gap = 0;
+            }
+
+            this.queue.add(new Delivery(change, 0));
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                Delivery next = this.queue.poll();
+
+                if (next == null) {
+                    // Changes stopped arriving while the queue was full, so report the ones dropped now.
+                    synchronized (ChangeStream.this) {
+                        if (this.gap > 0) {
+                            next = new Delivery(null, this.gap);
+                            this.gap = 0;
+                        }
+                    }
+                }
+
+                if (next == null) {
+                    deliver(null);
+
+                    try {
+                        next = this.queue.take();
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+
+                if (next == END) {
+                    break;
+                }
+
+                deliver(next);
+            }
+
+            final long dropped;
+
+            synchronized (ChangeStream.this) {
+                dropped = this.gap;
+                this.gap = 0;
+            }
+
+            if (dropped > 0) {
+                deliver(new Delivery(null, dropped));
+            }
+
+            deliver(null);
+
+            try {
+                this.subscriber.onComplete();
+            } catch (RuntimeException e) {
+                ChangeStream.this.logger.error("A connection change subscriber failed to complete.");
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Delivers the change, or tells the subscriber it is idle if there is
+         * none.
+         */
+        private void deliver(Delivery delivery) {
+            try {
+                if (delivery == null) {
+                    this.subscriber.onIdle();
+                } else if (delivery.change == null) {
+                    this.subscriber.onOverflow(delivery.dropped);
+                } else {
+                    this.subscriber.onChange(delivery.change);
+                }
+            } catch (RuntimeException e) {
+                ChangeStream.this.logger.error("A connection change subscriber failed.");
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Ends the subscription after the changes already queued, and waits
+         * a few seconds for them to be delivered. The thread is not
+         * interrupted, as that would close any file the subscriber is
+         * writing to.
+         */
+        @Override
+        public void cancel() {
+            synchronized (ChangeStream.this) {
+                if (this.cancelled) {
+                    return;
+                }
+
+                ChangeStream.this.subscriptions.remove(this);
+
+                this.cancelled = true;
+                this.queue.add(END);
+            }
+
+            if (Thread.currentThread() == this.thread) {
+                return;
+            }
+
+            try {
+                this.thread.join(TimeUnit.SECONDS.toMillis(CANCEL_TIMEOUT));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            if (this.thread.isAlive()) {
+                ChangeStream.this.logger.warn("A connection change subscriber took longer than " + CANCEL_TIMEOUT + " seconds to finish.");
+            }
+        }
+
+        @Override
+        public int getQueued() {
+            return this.queue.size();
+        }
+
+        @Override
+        public long getDroppedCount() {
+            return this.dropped.get();
+        }
+
+    }
+
+    private static final class Delivery {
+
+        final ConnectionChange change;
+        final long dropped;
+
+        Delivery(ConnectionChange change, long dropped) {
+            this.change = change;
+            this.dropped = dropped;
+        }
+
+    }
+
+}
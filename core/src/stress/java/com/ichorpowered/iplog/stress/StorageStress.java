@@ -0,0 +1,283 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.stress;
+
+import com.ichorpowered.iplog.Storage;
+import com.ichorpowered.iplog.storage.CircuitBreaker;
+import com.ichorpowered.iplog.storage.SpillJournal;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Simulates a storm of concurrent joins, purges and alias lookups against a
+ * temporary H2 database and reports throughput, latency percentiles and any
+ * writes that were lost or resurrected.
+ *
+ * <p>Run with {@code ./gradlew stress -PstressArgs="--threads 1,4,16"}. The
+ * {@code --mode legacy} option uses the old isPresent then add or update
+ * sequence instead of {@link Storage#recordConnection}.</p>
+ */
+public final class StorageStress {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger("IPLog Stress");
+
+    private final int operations;
+    private final int players;
+    private final int addresses;
+    private final boolean legacy;
+
+    private StorageStress(int operations, int players, int addresses, boolean legacy) {
+        this.operations = operations;
+        this.players = players;
+        this.addresses = addresses;
+        this.legacy = legacy;
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = new HashMap<>();
+
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+
+        final int[] threadCounts = Arrays.stream(options.getOrDefault("threads", "1,2,4,8,16").split(","))
+            .mapToInt(Integer::parseInt)
+            .toArray();
+
+        final StorageStress stress = new StorageStress(
+            Integer.parseInt(options.getOrDefault("ops", "50000")),
+            Integer.parseInt(options.getOrDefault("players", "2000")),
+            Integer.parseInt(options.getOrDefault("ips", "500")),
+            options.getOrDefault("mode", "record").equals("legacy"));
+
+        for (int threads : threadCounts) {
+            stress.run(threads);
+        }
+    }
+
+    private void run(int threads) throws Exception {
+        final Path directory = Files.createTempDirectory("iplog-stress");
+        final JdbcConnectionPool pool = JdbcConnectionPool.create("jdbc:h2:" + directory.toAbsolutePath() + "/storage.db", "", "");
+        pool.setMaxConnections(threads + 4);
+
+        final SpillJournal journal = new SpillJournal(directory.resolve("spill.journal"));
+        final Storage storage = new Storage(pool, LOGGER, new CircuitBreaker(Integer.MAX_VALUE, 10, 1, TimeUnit.SECONDS), journal);
+
+        final UUID[] players = new UUID[this.players];
+        final InetAddress[] addresses = new InetAddress[this.addresses];
+
+        for (int i = 0; i < players.length; i++) {
+            players[i] = UUID.randomUUID();
+        }
+
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = address(i);
+        }
+
+        final Set<String> expected = ConcurrentHashMap.newKeySet();
+        final Set<String> purged = ConcurrentHashMap.newKeySet();
+        final List<Worker> workers = new ArrayList<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int i = 0; i < threads; i++) {
+            final Worker worker = new Worker(storage, players, addresses, expected, purged, this.operations / threads);
+            workers.add(worker);
+
+            new Thread(() -> {
+                try {
+                    start.await();
+                    worker.run();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            }, "iplog-stress-" + i).start();
+        }
+
+        final long began = System.nanoTime();
+        start.countDown();
+        done.await();
+        final long elapsed = System.nanoTime() - began;
+
+        final int spilled = journal.size();
+        storage.replayJournal(1000);
+
+        final Set<String> actual = new HashSet<>();
+        int fanoutDrift = 0;
+
+        try (Connection conn = pool.getConnection()) {
+            try (ResultSet rs = conn.prepareStatement("SELECT IP, ID FROM REGISTRY").executeQuery()) {
+                while (rs.next()) {
+                    actual.add(rs.getString(1) + "/" + rs.getString(2));
+                }
+            }
+
+            try (ResultSet rs = conn.prepareStatement("SELECT"
+                + " (SELECT COUNT(*) FROM (SELECT IP, COUNT(*) C FROM REGISTRY GROUP BY IP) R"
+                + " LEFT JOIN FANOUT F ON (F.IP = R.IP) WHERE F.ACCOUNTS IS NULL OR F.ACCOUNTS <> R.C)"
+                + " + (SELECT COUNT(*) FROM FANOUT F WHERE NOT EXISTS (SELECT 1 FROM REGISTRY WHERE REGISTRY.IP = F.IP))").executeQuery()) {
+                if (rs.next()) {
+                    fanoutDrift = rs.getInt(1);
+                }
+            }
+        }
+
+        final long lost = expected.stream().filter(pair -> !actual.contains(pair)).count();
+        final long resurrected = purged.stream().filter(actual::contains).count();
+        final int total = workers.stream().mapToInt(worker -> worker.joins.size() + worker.purges.size() + worker.aliases.size()).sum();
+
+        LOGGER.info(String.format("threads=%d mode=%s ops=%d throughput=%.0f ops/s", threads, this.legacy ? "legacy" : "record",
+            total, total / (elapsed / 1e9)));
+        LOGGER.info("  join   " + percentiles(workers.stream().flatMap(worker -> worker.joins.stream())));
+        LOGGER.info("  purge  " + percentiles(workers.stream().flatMap(worker -> worker.purges.stream())));
+        LOGGER.info("  alias  " + percentiles(workers.stream().flatMap(worker -> worker.aliases.stream())));
+        LOGGER.info(String.format("  duplicate-key=%d failures=%d spilled=%d lost=%d resurrected=%d fanout-drift=%d",
+            storage.getConflictCount(), storage.getFailureCount(), spilled, lost, resurrected, fanoutDrift));
+
+        journal.close();
+        pool.dispose();
+
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted((a, b) -> b.compareTo(a)).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Failed to delete " + directory);
+        }
+    }
+
+    private static String percentiles(Stream<Long> samples) {
+        final long[] sorted = samples.mapToLong(Long::longValue).sorted().toArray();
+
+        if (sorted.length == 0) {
+            return "no samples";
+        }
+
+        return String.format("p50=%.3fms p95=%.3fms p99=%.3fms max=%.3fms", millis(sorted, 0.50), millis(sorted, 0.95),
+            millis(sorted, 0.99), sorted[sorted.length - 1] / 1e6);
+    }
+
+    private static double millis(long[] sorted, double percentile) {
+        return sorted[(int) Math.min(sorted.length - 1, Math.floor(percentile * sorted.length))] / 1e6;
+    }
+
+    private static InetAddress address(int index) throws UnknownHostException {
+        return InetAddress.getByAddress(new byte[] {10, (byte) (index >> 16), (byte) (index >> 8), (byte) index});
+    }
+
+    private final class Worker {
+
+        private final Storage storage;
+        private final UUID[] players;
+        private final InetAddress[] addresses;
+        private final Set<String> expected;
+        private final Set<String> purged;
+        private final int operations;
+
+        private final List<Long> joins = new ArrayList<>();
+        private final List<Long> purges = new ArrayList<>();
+        private final List<Long> aliases = new ArrayList<>();
+
+        private Worker(Storage storage, UUID[] players, InetAddress[] addresses, Set<String> expected, Set<String> purged, int operations) {
+            this.storage = storage;
+            this.players = players;
+            this.addresses = addresses;
+            this.expected = expected;
+            this.purged = purged;
+            this.operations = operations;
+        }
+
+        private void run() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            for (int i = 0; i < this.operations; i++) {
+                final int roll = random.nextInt(100);
+
+                // One address behaves like public Wi-Fi and takes a tenth of all joins.
+                final InetAddress ip = this.addresses[random.nextInt(10) == 0 ? 0 : random.nextInt(this.addresses.length)];
+
+                if (roll < 90) {
+                    final UUID uuid = this.players[random.nextInt(this.players.length)];
+                    final long start = System.nanoTime();
+
+                    if (StorageStress.this.legacy) {
+                        if (this.storage.isPresent(ip, uuid)) {
+                            this.storage.updateConnection(ip, uuid, LocalDateTime.now());
+                        } else {
+                            this.storage.addConnection(ip, uuid, LocalDateTime.now());
+                        }
+                    } else {
+                        this.storage.recordConnection(ip, uuid, LocalDateTime.now());
+                    }
+
+                    this.joins.add(System.nanoTime() - start);
+                    this.expected.add(ip.getHostAddress() + "/" + uuid);
+                } else if (roll < 95) {
+                    final UUID uuid = UUID.randomUUID();
+                    this.storage.recordConnection(ip, uuid, LocalDateTime.now());
+
+                    final long start = System.nanoTime();
+                    this.storage.purgeConnection(ip, uuid);
+                    this.purges.add(System.nanoTime() - start);
+                    this.purged.add(ip.getHostAddress() + "/" + uuid);
+                } else {
+                    final long start = System.nanoTime();
+                    this.storage.getAliases(this.players[random.nextInt(this.players.length)], 25);
+                    this.aliases.add(System.nanoTime() - start);
+                }
+            }
+        }
+
+    }
+
+}
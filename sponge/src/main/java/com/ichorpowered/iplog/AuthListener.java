@@ -0,0 +1,90 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import com.ichorpowered.iplog.auth.EvasionCheck;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.Order;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.channel.MessageChannel;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.UUID;
+
+public class AuthListener {
+
+    private final EvasionCheck check;
+    private final boolean deny;
+
+    public AuthListener(EvasionCheck check, boolean deny) {
+        this.check = check;
+        this.deny = deny;
+    }
+
+    @Listener(order = Order.LATE)
+    public void onPlayerAuth(ClientConnectionEvent.Auth event) {
+        if (event.isCancelled()) {
+            return;
+        }
+
+        final String ip = event.getConnection().getAddress().getAddress().getHostAddress();
+        final UUID uuid = event.getProfile().getUniqueId();
+        final EvasionCheck.Result result = this.check.check(ip, uuid);
+
+        if (!result.getLinkedAccount().isPresent()) {
+            return;
+        }
+
+        if (this.deny) {
+            event.setCancelled(true);
+            event.setMessage(Text.of(TextColors.RED, "This address is linked to a banned account."));
+        }
+
+        final String name = event.getProfile().getName().orElse(uuid.toString());
+        final UUID account = result.getLinkedAccount().get();
+
+        Sponge.getScheduler().createSyncExecutor(IPLog.getPlugin()).execute(() -> {
+            final String banned = Sponge.getServiceManager().provide(UserStorageService.class)
+                .flatMap(service -> service.get(account))
+                .map(User::getName)
+                .orElse(account.toString());
+
+            MessageChannel.permission("iplog.notify").send(Text.of(TextColors.DARK_GREEN, name, TextColors.GRAY,
+                this.deny ? " was refused, as " : " is joining from ", Text.of(TextColors.GREEN, ip).toBuilder()
+                    .onHover(TextActions.showText(Text.of(TextColors.GRAY, "Click to look up every user of this IP.")))
+                    .onClick(TextActions.runCommand("/ip lookup " + ip))
+                    .build(),
+                TextColors.GRAY, this.deny ? " is shared with the banned account " : ", which is shared with the banned account ",
+                TextColors.RED, banned));
+        });
+    }
+
+}
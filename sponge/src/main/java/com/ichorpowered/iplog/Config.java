@@ -0,0 +1,346 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+
+import java.io.IOException;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+
+public final class Config {
+
+    private final ConfigurationLoader<CommentedConfigurationNode> loader;
+
+    private boolean enrichmentEnabled;
+    private String enrichmentDatabase;
+    private String enrichmentSource;
+    private int enrichmentCacheSize;
+    private int aliasFanoutThreshold;
+    private int aliasScoreWindow;
+    private int aliasScoreHalfLife;
+    private int aliasScorePairs;
+    private int sketchSaveInterval;
+    private int breakerFailureThreshold;
+    private int breakerLatencyThreshold;
+    private int breakerOpenDuration;
+    private int journalReplayBatch;
+    private int writeConnections;
+    private int readConnections;
+    private int readTimeout;
+    private int shards;
+    private boolean authEnabled;
+    private int authDeadline;
+    private boolean authDeny;
+    private String backupDirectory;
+    private int backupInterval;
+    private int backupKeep;
+    private int indexSnapshotInterval;
+    private boolean burstEnabled;
+    private int burstWindow;
+    private int burstAddressThreshold;
+    private int burstSubnetThreshold;
+    private int burstSlots;
+    private boolean maintenanceEnabled;
+    private String maintenanceWindow;
+    private int maintenanceBudget;
+    private int maintenanceMinFillRate;
+    private boolean changesEnabled;
+    private String changesDirectory;
+    private int changesMaxSize;
+    private int changesKeep;
+    private int changesQueue;
+
+    public Config(ConfigurationLoader<CommentedConfigurationNode> loader) {
+        this.loader = loader;
+    }
+
+    public void load() throws IOException {
+        final CommentedConfigurationNode root = this.loader.load();
+
+        this.enrichmentEnabled = value(root, true, "Whether IP addresses are annotated with ASN, country and hosting data.",
+            "enrichment", "enabled").getBoolean(true);
+        this.enrichmentDatabase = value(root, "ip-ranges.dat", "The binary range database, relative to the IPLog config directory.",
+            "enrichment", "database").getString("ip-ranges.dat");
+        this.enrichmentSource = value(root, "ip-ranges.csv", "A CSV file of start,end,asn,country,hosting rows that is compiled into"
+            + " the range database whenever it is newer.", "enrichment", "source").getString("ip-ranges.csv");
+        this.enrichmentCacheSize = value(root, 4096, "How many recent lookups are kept in memory.",
+            "enrichment", "cache-size").getInt(4096);
+
+        this.aliasFanoutThreshold = value(root, 25, "Addresses shared by more accounts than this are listed separately instead of"
+            + " being followed when looking up aliases. Set to 0 to follow every address.", "alias", "fanout-threshold").getInt(25);
+        this.aliasScoreWindow = value(root, 10, "How many minutes apart two accounts may join from one address for it to count towards"
+            + " their alias score.", "alias", "score-window").getInt(10);
+        this.aliasScoreHalfLife = value(root, 30, "How many days it takes for an alias score to halve without new joins.",
+            "alias", "score-half-life").getInt(30);
+        this.aliasScorePairs = value(root, 65536, "How many pairs of accounts are scored at once. Memory use is fixed by this.",
+            "alias", "score-pairs").getInt(65536);
+
+        this.sketchSaveInterval = value(root, 5, "How often, in minutes, the activity reports behind /ip top are saved.",
+            "reports", "save-interval").getInt(5);
+
+        this.breakerFailureThreshold = value(root, 3, "How many failed or slow storage calls in a row stop IPLog from using storage"
+            + " and send joins to the journal instead.", "storage", "breaker", "failure-threshold").getInt(3);
+        this.breakerLatencyThreshold = value(root, 500, "Storage calls slower than this many milliseconds count as failures.",
+            "storage", "breaker", "latency-threshold").getInt(500);
+        this.breakerOpenDuration = value(root, 30, "How many seconds to wait before trying storage again after it failed.",
+            "storage", "breaker", "open-duration").getInt(30);
+        this.journalReplayBatch = value(root, 500, "How many journaled connections are replayed per transaction once storage recovers.",
+            "storage", "journal", "replay-batch").getInt(500);
+        this.writeConnections = value(root, 4, "How many connections are reserved for recording joins and sessions.",
+            "storage", "write-connections").getInt(4);
+        this.readConnections = value(root, 2, "How many lookups may read storage at once. Further lookups wait for a free connection"
+            + " instead of slowing down joins.", "storage", "read-connections").getInt(2);
+        this.readTimeout = value(root, 10, "How many seconds a lookup may run before it is cancelled. Set to 0 for no limit.",
+            "storage", "read-timeout").getInt(10);
+        this.shards = value(root, 1, "How many files storage is split across by address, each written to in parallel with its own"
+            + " connections. Changing this moves every connection to its new file on the next start.", "storage", "shards").getInt(1);
+
+        this.authEnabled = value(root, false, "Whether joining players are checked for sharing an address with a banned account"
+            + " before they log in.", "auth", "enabled").getBoolean(false);
+        this.authDeadline = value(root, 2000, "How many microseconds a check may take before the player is let in unchecked.",
+            "auth", "deadline").getInt(2000);
+        this.authDeny = value(root, false, "Whether linked players are refused. Otherwise staff with iplog.notify are told instead.",
+            "auth", "deny").getBoolean(false);
+
+        this.backupDirectory = value(root, "backups", "Where storage backups are written, relative to the IPLog config directory.",
+            "backup", "directory").getString("backups");
+        this.backupInterval = value(root, 24, "How often, in hours, storage is backed up. Set to 0 to only back up with /ip backup.",
+            "backup", "interval").getInt(24);
+        this.backupKeep = value(root, 7, "How many of the newest backups are kept.", "backup", "keep").getInt(7);
+
+        this.indexSnapshotInterval = value(root, 60, "How often, in minutes, the address index is saved so that it loads instantly on startup.",
+            "index", "snapshot-interval").getInt(60);
+
+        this.burstEnabled = value(root, true, "Whether staff with iplog.notify are told when many new accounts join from one address"
+            + " or subnet in a short time.", "burst", "enabled").getBoolean(true);
+        this.burstWindow = value(root, 10, "How many minutes the new accounts must join within.", "burst", "window").getInt(10);
+        this.burstAddressThreshold = value(root, 5, "How many new accounts from one address count as a burst. Set to 0 to only"
+            + " watch subnets.", "burst", "address-threshold").getInt(5);
+        this.burstSubnetThreshold = value(root, 10, "How many new accounts from one /24, or /64 for IPv6, count as a burst."
+            + " Set to 0 to only watch addresses.", "burst", "subnet-threshold").getInt(10);
+        this.burstSlots = value(root, 4096, "How many addresses and subnets are watched at once. Memory use is fixed by this.",
+            "burst", "slots").getInt(4096);
+
+        this.maintenanceEnabled = value(root, true, "Whether the storage file is compacted once a day when much of it no longer holds"
+            + " live data.", "maintenance", "enabled").getBoolean(true);
+        this.maintenanceWindow = value(root, "04:00-06:00", "The quiet hours, in server time, during which the storage file may be"
+            + " compacted. Joins are journaled while it runs.", "maintenance", "window").getString("04:00-06:00");
+        this.maintenanceBudget = value(root, 30, "How many seconds compaction may take at most.", "maintenance", "budget").getInt(30);
+        this.maintenanceMinFillRate = value(root, 50, "The storage file is only compacted once less than this percentage of it holds"
+            + " live data.", "maintenance", "min-fill-rate").getInt(50);
+
+        this.changesEnabled = value(root, false, "Whether every connection added, refreshed or purged is appended to changes.ndjson"
+            + " for other programs to tail.", "changes", "enabled").getBoolean(false);
+        this.changesDirectory = value(root, "changes", "Where the change files are written, relative to the IPLog config directory.",
+            "changes", "directory").getString("changes");
+        this.changesMaxSize = value(root, 16, "How many megabytes the change file may grow to before a new one is started.",
+            "changes", "max-size").getInt(16);
+        this.changesKeep = value(root, 5, "How many of the newest full change files are kept.", "changes", "keep").getInt(5);
+        this.changesQueue = value(root, 4096, "How many changes may wait to be written before further ones are dropped. Joins never"
+            + " wait for the file.", "changes", "queue").getInt(4096);
+
+        this.loader.save(root);
+    }
+
+    private static CommentedConfigurationNode value(CommentedConfigurationNode root, Object def, String comment, Object... path) {
+        final CommentedConfigurationNode node = root.getNode(path);
+
+        if (node.isVirtual()) {
+            node.setValue(def);
+        }
+
+        if (!node.getComment().isPresent()) {
+            node.setComment(comment);
+        }
+
+        return node;
+    }
+
+    public boolean isEnrichmentEnabled() {
+        return this.enrichmentEnabled;
+    }
+
+    public String getEnrichmentDatabase() {
+        return this.enrichmentDatabase;
+    }
+
+    public String getEnrichmentSource() {
+        return this.enrichmentSource;
+    }
+
+    public int getEnrichmentCacheSize() {
+        return this.enrichmentCacheSize;
+    }
+
+    public int getBreakerFailureThreshold() {
+        return this.breakerFailureThreshold;
+    }
+
+    public int getBreakerLatencyThreshold() {
+        return this.breakerLatencyThreshold;
+    }
+
+    public int getBreakerOpenDuration() {
+        return this.breakerOpenDuration;
+    }
+
+    public int getJournalReplayBatch() {
+        return Math.max(1, this.journalReplayBatch);
+    }
+
+    public int getWriteConnections() {
+        return Math.max(1, this.writeConnections);
+    }
+
+    public int getReadConnections() {
+        return Math.max(1, this.readConnections);
+    }
+
+    public int getReadTimeout() {
+        return Math.max(0, this.readTimeout);
+    }
+
+    public int getShards() {
+        return Math.max(1, this.shards);
+    }
+
+    public int getSketchSaveInterval() {
+        return Math.max(1, this.sketchSaveInterval);
+    }
+
+    public int getAliasFanoutThreshold() {
+        return this.aliasFanoutThreshold <= 0 ? Integer.MAX_VALUE : this.aliasFanoutThreshold;
+    }
+
+    public int getAliasScoreWindow() {
+        return Math.max(1, this.aliasScoreWindow);
+    }
+
+    public int getAliasScoreHalfLife() {
+        return Math.max(1, this.aliasScoreHalfLife);
+    }
+
+    public int getAliasScorePairs() {
+        return Math.max(1024, this.aliasScorePairs);
+    }
+
+    public boolean isAuthEnabled() {
+        return this.authEnabled;
+    }
+
+    public int getAuthDeadline() {
+        return Math.max(1, this.authDeadline);
+    }
+
+    public boolean isAuthDeny() {
+        return this.authDeny;
+    }
+
+    public String getBackupDirectory() {
+        return this.backupDirectory;
+    }
+
+    public int getBackupInterval() {
+        return this.backupInterval;
+    }
+
+    public int getBackupKeep() {
+        return Math.max(1, this.backupKeep);
+    }
+
+    public int getIndexSnapshotInterval() {
+        return Math.max(1, this.indexSnapshotInterval);
+    }
+
+    public boolean isBurstEnabled() {
+        return this.burstEnabled;
+    }
+
+    public int getBurstWindow() {
+        return Math.max(1, this.burstWindow);
+    }
+
+    public int getBurstAddressThreshold() {
+        return this.burstAddressThreshold;
+    }
+
+    public int getBurstSubnetThreshold() {
+        return this.burstSubnetThreshold;
+    }
+
+    public int getBurstSlots() {
+        return Math.max(16, this.burstSlots);
+    }
+
+    public boolean isMaintenanceEnabled() {
+        return this.maintenanceEnabled;
+    }
+
+    /**
+     * Gets the start and end of the maintenance window, which may wrap past
+     * midnight.
+     */
+    public LocalTime[] getMaintenanceWindow() throws DateTimeParseException {
+        final String[] times = this.maintenanceWindow.split("-", 2);
+
+        if (times.length != 2) {
+            throw new DateTimeParseException("Expected a window like 04:00-06:00", this.maintenanceWindow, 0);
+        }
+
+        return new LocalTime[] {LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim())};
+    }
+
+    public int getMaintenanceBudget() {
+        return Math.max(1, this.maintenanceBudget);
+    }
+
+    public int getMaintenanceMinFillRate() {
+        return this.maintenanceMinFillRate;
+    }
+
+    public boolean isChangesEnabled() {
+        return this.changesEnabled;
+    }
+
+    public String getChangesDirectory() {
+        return this.changesDirectory;
+    }
+
+    public long getChangesMaxSize() {
+        return Math.max(1, this.changesMaxSize) * 1024L * 1024L;
+    }
+
+    public int getChangesKeep() {
+        return Math.max(0, this.changesKeep);
+    }
+
+    public int getChangesQueue() {
+        return Math.max(1, this.changesQueue);
+    }
+
+}
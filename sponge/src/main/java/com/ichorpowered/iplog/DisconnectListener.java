@@ -25,32 +25,23 @@
 
 package com.ichorpowered.iplog;
 
+import org.spongepowered.api.Sponge;
 import org.spongepowered.api.entity.living.player.Player;
 import org.spongepowered.api.event.Listener;
 import org.spongepowered.api.event.filter.cause.Root;
 import org.spongepowered.api.event.network.ClientConnectionEvent;
 
-import java.net.InetAddress;
 import java.time.LocalDateTime;
-import java.util.UUID;
 
-public class JoinListener {
+public class DisconnectListener {
 
     @Listener
-    public void onPlayerJoin(ClientConnectionEvent.Join event, @Root Player player) {
-        if (!player.hasPermission("iplog.bypasslogging")) {
-            final Storage storage = IPLog.getPlugin().getStorage();
+    public void onPlayerDisconnect(ClientConnectionEvent.Disconnect event, @Root Player player) {
+        final LocalDateTime time = LocalDateTime.now();
 
-            final InetAddress ip = player.getConnection().getAddress().getAddress();
-            final UUID uuid = player.getUniqueId();
-            final LocalDateTime time = LocalDateTime.now();
-
-            if (storage.isPresent(ip, uuid)) {
-                storage.updateConnection(ip, uuid, time);
-            } else {
-                storage.addConnection(ip, uuid, time);
-            }
-        }
+        IPLog.getPlugin().getSessions().close(player.getUniqueId()).ifPresent(session ->
+            Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() ->
+                IPLog.getPlugin().getStorage().recordSession(session, time)));
     }
 
 }
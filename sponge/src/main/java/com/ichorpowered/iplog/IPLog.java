@@ -0,0 +1,783 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import com.google.common.collect.Lists;
+import com.google.inject.Inject;
+import com.ichorpowered.iplog.api.ChangeSubscription;
+import com.ichorpowered.iplog.api.IPLogService;
+import com.ichorpowered.iplog.audit.AltAudit;
+import com.ichorpowered.iplog.auth.EvasionCheck;
+import com.ichorpowered.iplog.burst.BurstDetector;
+import com.ichorpowered.iplog.command.ActivityCommand;
+import com.ichorpowered.iplog.command.AddCommand;
+import com.ichorpowered.iplog.command.AliasCommand;
+import com.ichorpowered.iplog.command.AuditCommand;
+import com.ichorpowered.iplog.command.BackupCommand;
+import com.ichorpowered.iplog.command.BaseCommand;
+import com.ichorpowered.iplog.command.HelpCommand;
+import com.ichorpowered.iplog.command.HistoryCommand;
+import com.ichorpowered.iplog.command.IpElement;
+import com.ichorpowered.iplog.command.LookupCommand;
+import com.ichorpowered.iplog.command.MetricsCommand;
+import com.ichorpowered.iplog.command.NameCommand;
+import com.ichorpowered.iplog.command.OnlineCommand;
+import com.ichorpowered.iplog.command.PlaytimeCommand;
+import com.ichorpowered.iplog.command.PurgeCommand;
+import com.ichorpowered.iplog.command.TimeElement;
+import com.ichorpowered.iplog.command.TopCommand;
+import com.ichorpowered.iplog.command.UniqueCommand;
+import com.ichorpowered.iplog.enrichment.IpRangeDatabase;
+import com.ichorpowered.iplog.index.AddressIndex;
+import com.ichorpowered.iplog.index.IndexSnapshot;
+import com.ichorpowered.iplog.index.NameIndex;
+import com.ichorpowered.iplog.score.AltScores;
+import com.ichorpowered.iplog.session.SessionTracker;
+import com.ichorpowered.iplog.sketch.ActivitySketches;
+import com.ichorpowered.iplog.storage.Backups;
+import com.ichorpowered.iplog.storage.CircuitBreaker;
+import com.ichorpowered.iplog.storage.Compaction;
+import com.ichorpowered.iplog.storage.FileStats;
+import com.ichorpowered.iplog.storage.Lane;
+import com.ichorpowered.iplog.storage.Shard;
+import com.ichorpowered.iplog.storage.SpillJournal;
+import com.ichorpowered.iplog.stream.ChangeLog;
+import ninja.leaping.configurate.commented.CommentedConfigurationNode;
+import ninja.leaping.configurate.loader.ConfigurationLoader;
+import org.slf4j.Logger;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.args.GenericArguments;
+import org.spongepowered.api.command.spec.CommandSpec;
+import org.spongepowered.api.config.ConfigDir;
+import org.spongepowered.api.config.DefaultConfig;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.game.state.GamePreInitializationEvent;
+import org.spongepowered.api.event.game.state.GameStoppingServerEvent;
+import org.spongepowered.api.plugin.Plugin;
+import org.spongepowered.api.plugin.PluginContainer;
+import org.spongepowered.api.profile.GameProfile;
+import org.spongepowered.api.scheduler.Task;
+import org.spongepowered.api.service.ban.BanService;
+import org.spongepowered.api.service.sql.SqlService;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.TimeUnit;
+
+@Plugin(
+    id = "iplog",
+    name = "IPLog",
+    version = "0.2.1",
+    description = "Connects IP addresses to users, allowing you to catch alternates and similar.",
+    url = "http://ichorpowered.com",
+    authors = {"Meronat", "IchorPowered"})
+public final class IPLog {
+
+    private static final DateTimeFormatter AUDIT_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final long LANE_WAIT = 5;
+
+    private static IPLog plugin;
+
+    private Logger logger;
+    private Config config;
+    private Storage storage;
+    private SpillJournal journal;
+    private AddressIndex addressIndex;
+    private NameIndex nameIndex;
+    private IpRangeDatabase ipDatabase;
+    private ActivitySketches sketches;
+    private AltScores altScores;
+    private SessionTracker sessions;
+    private EvasionCheck evasionCheck;
+    private volatile BurstDetector burstDetector;
+    private Backups backups;
+    private ChangeSubscription changeLog;
+    private Task replayTask;
+    private LocalTime[] maintenanceWindow;
+    private LocalDate maintainedOn;
+    private volatile Compaction compaction;
+    private volatile AltAudit audit;
+    private Path parentPath;
+    private PluginContainer pluginContainer;
+
+    @Inject
+    public IPLog(Logger logger, @ConfigDir(sharedRoot = false) Path path, PluginContainer pluginContainer,
+                 @DefaultConfig(sharedRoot = false) ConfigurationLoader<CommentedConfigurationNode> configLoader) {
+        plugin = this;
+
+        this.logger = logger;
+        this.parentPath = path;
+        this.pluginContainer = pluginContainer;
+        this.config = new Config(configLoader);
+    }
+
+    @Listener
+    public void onGamePreInitialization(GamePreInitializationEvent event) {
+        try {
+            this.config.load();
+        } catch (IOException e) {
+            this.logger.warn("IPLog will not load as it failed to load its configuration.");
+            e.printStackTrace();
+
+            return;
+        }
+
+        try {
+            this.journal = new SpillJournal(this.parentPath.resolve("spill.journal"));
+        } catch (IOException e) {
+            this.logger.warn("IPLog will not load as it failed to open its spill journal.");
+            e.printStackTrace();
+
+            return;
+        }
+
+        try {
+            final SqlService sql = Sponge.getServiceManager().provide(SqlService.class)
+                .orElseThrow(() -> new SQLException("Sponge SQL service is missing."));
+
+            final List<Shard> shards = new ArrayList<>();
+            final List<Shard> retired = new ArrayList<>();
+
+            for (int i = 0; i < this.config.getShards(); i++) {
+                shards.add(openShard(sql, i));
+            }
+
+            // Files left over from when there were more shards are emptied into the others.
+            for (int i = shards.size(); Files.exists(this.parentPath.resolve(shardFile(i) + ".mv.db")); i++) {
+                retired.add(openShard(sql, i));
+            }
+
+            this.storage = new Storage(shards, retired, this.logger, new CircuitBreaker(this.config.getBreakerFailureThreshold(), this.config.getBreakerLatencyThreshold(),
+                this.config.getBreakerOpenDuration() * 1000L, TimeUnit.MILLISECONDS), this.journal);
+        } catch (SQLException e) {
+            this.logger.warn("IPLog will not load as it failed to connect or load storage.");
+            e.printStackTrace();
+
+            return;
+        }
+
+        this.addressIndex = new AddressIndex(loadIndexSnapshot());
+        this.storage.addListener(this.addressIndex);
+
+        Sponge.getScheduler().createAsyncExecutor(this).execute(() -> {
+            final long sequence = this.addressIndex.getSequence();
+
+            if (sequence < 0 ? this.storage.forEachConnection(this.addressIndex) : this.storage.forEachChange(sequence, this.addressIndex)) {
+                this.logger.info("Indexed " + this.addressIndex.size() + " addresses for tab completion.");
+                saveIndexSnapshot();
+
+                // New accounts are only told apart once the index knows every account.
+                if (this.config.isBurstEnabled()) {
+                    this.burstDetector = new BurstDetector(this.config.getBurstSlots(), this.config.getBurstWindow(), TimeUnit.MINUTES,
+                        this.config.getBurstAddressThreshold(), this.config.getBurstSubnetThreshold());
+                }
+            }
+        });
+
+        loadAltScores();
+
+        this.nameIndex = new NameIndex();
+
+        // Names seen while these load are recorded again, which storage ignores.
+        Sponge.getScheduler().createAsyncExecutor(this).execute(() -> {
+            if (this.storage.forEachName(this.nameIndex::add)) {
+                this.logger.info("Indexed " + this.nameIndex.size() + " names for name searches.");
+            }
+        });
+
+        Sponge.getScheduler().createTaskBuilder()
+            .async()
+            .interval(this.config.getIndexSnapshotInterval(), TimeUnit.MINUTES)
+            .delay(this.config.getIndexSnapshotInterval(), TimeUnit.MINUTES)
+            .execute(this::saveIndexSnapshot)
+            .submit(this);
+
+        if (!this.journal.isEmpty()) {
+            this.logger.info(this.journal.size() + " journaled connections will be replayed into storage.");
+        }
+
+        this.replayTask = Sponge.getScheduler().createTaskBuilder()
+            .async()
+            .interval(5, TimeUnit.SECONDS)
+            .execute(() -> this.storage.replayJournal(this.config.getJournalReplayBatch()))
+            .submit(this);
+
+        if (this.config.isEnrichmentEnabled()) {
+            loadIpDatabase();
+        }
+
+        loadSketches();
+
+        if (this.config.isMaintenanceEnabled()) {
+            try {
+                this.maintenanceWindow = this.config.getMaintenanceWindow();
+
+                Sponge.getScheduler().createTaskBuilder()
+                    .async()
+                    .interval(5, TimeUnit.MINUTES)
+                    .execute(this::maintain)
+                    .submit(this);
+            } catch (DateTimeParseException e) {
+                this.logger.warn("The maintenance window is not valid, so storage will not be compacted.");
+            }
+        }
+
+        this.backups = new Backups(this.parentPath.resolve(this.config.getBackupDirectory()), this.config.getBackupKeep());
+
+        if (this.config.getBackupInterval() > 0) {
+            Sponge.getScheduler().createTaskBuilder()
+                .async()
+                .interval(this.config.getBackupInterval(), TimeUnit.HOURS)
+                .delay(this.config.getBackupInterval(), TimeUnit.HOURS)
+                .execute(this::backup)
+                .submit(this);
+        }
+
+        if (this.config.isChangesEnabled()) {
+            this.changeLog = this.storage.getChangeStream().subscribe(new ChangeLog(this.parentPath.resolve(this.config.getChangesDirectory()),
+                this.config.getChangesMaxSize(), this.config.getChangesKeep(), this.logger), this.config.getChangesQueue());
+        }
+
+        this.sessions = new SessionTracker();
+
+        Sponge.getServiceManager().setProvider(this, IPLogService.class,
+            new StorageService(this.storage, Sponge.getScheduler().createAsyncExecutor(this), this.config::getAliasFanoutThreshold));
+
+        registerCommands();
+
+        Sponge.getEventManager().registerListeners(this, new JoinListener());
+        Sponge.getEventManager().registerListeners(this, new DisconnectListener());
+
+        if (this.config.isAuthEnabled()) {
+            this.evasionCheck = new EvasionCheck(this.addressIndex, uuid -> Sponge.getServiceManager().provide(BanService.class)
+                .map(service -> service.isBanned(GameProfile.of(uuid)))
+                .orElse(false), this.config.getAuthDeadline(), TimeUnit.MICROSECONDS);
+
+            Sponge.getEventManager().registerListeners(this, new AuthListener(this.evasionCheck, this.config.isAuthDeny()));
+        }
+    }
+
+    private Shard openShard(SqlService sql, int index) throws SQLException {
+        // Statements run concurrently instead of queueing on the database, and reads get a pool of their own.
+        final String url = "jdbc:h2:" + this.parentPath.toAbsolutePath().resolve(shardFile(index)).toString() + ";MULTI_THREADED=1";
+        final int readTimeout = this.config.getReadTimeout();
+
+        return new Shard(new Lane(sql.getDataSource(url), this.config.getWriteConnections(), LANE_WAIT, 0, TimeUnit.SECONDS),
+            new Lane(sql.getDataSource(url + ";QUERY_TIMEOUT=" + readTimeout * 1000), this.config.getReadConnections(), LANE_WAIT,
+                readTimeout, TimeUnit.SECONDS));
+    }
+
+    private static String shardFile(int index) {
+        return index == 0 ? "storage.db" : "storage-" + index + ".db";
+    }
+
+    private IndexSnapshot loadIndexSnapshot() {
+        try {
+            final IndexSnapshot snapshot = IndexSnapshot.openLatest(this.parentPath);
+
+            if (snapshot == null) {
+                return IndexSnapshot.empty();
+            }
+
+            // A snapshot ahead of storage belongs to a database that has since been replaced or restored.
+            if (this.storage.getSequence().orElse(Long.MAX_VALUE) < snapshot.getSequence()) {
+                this.logger.info("The address index snapshot does not match storage, so it will be rebuilt.");
+                return IndexSnapshot.empty();
+            }
+
+            this.logger.info("Loaded " + snapshot.getAddressCount() + " addresses from the address index snapshot.");
+
+            return snapshot;
+        } catch (IOException e) {
+            this.logger.warn("Failed to load the address index snapshot, so it will be rebuilt.");
+            e.printStackTrace();
+
+            return IndexSnapshot.empty();
+        }
+    }
+
+    private void saveIndexSnapshot() {
+        if (!this.addressIndex.isChanged()) {
+            return;
+        }
+
+        final OptionalLong sequence = this.storage.getSequencePoint();
+
+        if (!sequence.isPresent()) {
+            return;
+        }
+
+        try {
+            this.addressIndex.snapshot(this.parentPath, sequence.getAsLong());
+            this.storage.prunePurged(sequence.getAsLong());
+        } catch (IOException e) {
+            this.logger.error("Failed to save the address index snapshot.");
+            e.printStackTrace();
+        }
+    }
+
+    private void loadIpDatabase() {
+        final Path database = this.parentPath.resolve(this.config.getEnrichmentDatabase());
+        final Path source = this.parentPath.resolve(this.config.getEnrichmentSource());
+
+        try {
+            if (Files.exists(source) && (!Files.exists(database)
+                || Files.getLastModifiedTime(source).compareTo(Files.getLastModifiedTime(database)) > 0)) {
+                IpRangeDatabase.write(database, IpRangeDatabase.readCsv(source));
+                this.logger.info("Compiled the IP range database from " + source.getFileName() + ".");
+            }
+
+            if (!Files.exists(database)) {
+                this.logger.info("No IP range database was found, so addresses will not be enriched.");
+                return;
+            }
+
+            this.ipDatabase = IpRangeDatabase.open(database, this.config.getEnrichmentCacheSize());
+            this.logger.info("Loaded " + this.ipDatabase.size() + " IP ranges for enrichment.");
+        } catch (IOException e) {
+            this.logger.warn("Failed to load the IP range database, so addresses will not be enriched.");
+            e.printStackTrace();
+        }
+    }
+
+    @Listener
+    public void onGameStoppingServer(GameStoppingServerEvent event) {
+        if (this.sketches != null) {
+            saveSketches();
+        }
+
+        if (this.altScores != null) {
+            saveAltScores();
+        }
+
+        if (this.storage != null && this.sessions != null) {
+            final LocalDateTime time = LocalDateTime.now();
+
+            this.sessions.closeAll().forEach(session -> this.storage.recordSession(session, time));
+        }
+
+        if (this.replayTask != null) {
+            this.replayTask.cancel();
+        }
+
+        if (this.storage != null) {
+            this.storage.replayJournal(this.config.getJournalReplayBatch());
+        }
+
+        if (this.addressIndex != null) {
+            saveIndexSnapshot();
+        }
+
+        if (this.evasionCheck != null) {
+            this.evasionCheck.shutdown();
+        }
+
+        if (this.changeLog != null) {
+            this.changeLog.cancel();
+        }
+
+        if (this.journal != null) {
+            try {
+                this.journal.close();
+            } catch (IOException e) {
+                this.logger.error("Failed to close the spill journal.");
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void loadSketches() {
+        this.sketches = new ActivitySketches();
+
+        try {
+            this.sketches.load(this.parentPath.resolve("sketches.dat"));
+        } catch (IOException e) {
+            this.logger.warn("Failed to load saved activity reports, so they will start empty.");
+            e.printStackTrace();
+        }
+
+        Sponge.getScheduler().createTaskBuilder()
+            .async()
+            .interval(this.config.getSketchSaveInterval(), TimeUnit.MINUTES)
+            .delay(this.config.getSketchSaveInterval(), TimeUnit.MINUTES)
+            .execute(this::saveSketches)
+            .submit(this);
+    }
+
+    private void saveSketches() {
+        try {
+            this.sketches.save(this.parentPath.resolve("sketches.dat"));
+        } catch (IOException e) {
+            this.logger.error("Failed to save activity reports.");
+            e.printStackTrace();
+        }
+    }
+
+    private void loadAltScores() {
+        this.altScores = new AltScores(this.config.getAliasScorePairs(), this.config.getAliasScoreWindow(),
+            this.config.getAliasScoreHalfLife() * 24L * 60L, TimeUnit.MINUTES, ip -> this.addressIndex.getAccounts(ip.getHostAddress()).size());
+
+        try {
+            this.altScores.load(this.parentPath.resolve("scores.dat"));
+        } catch (IOException e) {
+            this.logger.warn("Failed to load saved alias scores, so they will start empty.");
+            e.printStackTrace();
+        }
+
+        this.storage.getChangeStream().subscribe(this.altScores, 4096);
+
+        Sponge.getScheduler().createTaskBuilder()
+            .async()
+            .interval(this.config.getSketchSaveInterval(), TimeUnit.MINUTES)
+            .delay(this.config.getSketchSaveInterval(), TimeUnit.MINUTES)
+            .execute(this::saveAltScores)
+            .submit(this);
+    }
+
+    private void saveAltScores() {
+        try {
+            this.altScores.save(this.parentPath.resolve("scores.dat"));
+        } catch (IOException e) {
+            this.logger.error("Failed to save alias scores.");
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Backs up storage while it stays in use and rotates out old backups.
+     * Empty if the backup failed or another one is still running.
+     */
+    public Optional<Path> backup() {
+        try {
+            final Optional<Path> backup = this.backups.create(this.storage::backup);
+
+            backup.ifPresent(path -> this.logger.info("Backed up storage to " + this.parentPath.relativize(path) + "."));
+
+            return backup;
+        } catch (IOException e) {
+            this.logger.error("Failed to back up storage.");
+            e.printStackTrace();
+
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Compacts storage once per maintenance window, if enough of the file
+     * no longer holds live data.
+     */
+    private synchronized void maintain() {
+        final LocalDateTime now = LocalDateTime.now();
+        final LocalTime start = this.maintenanceWindow[0];
+        final LocalTime end = this.maintenanceWindow[1];
+        final LocalTime time = now.toLocalTime();
+
+        final boolean inside = start.isBefore(end) ? !time.isBefore(start) && time.isBefore(end) : !time.isBefore(start) || time.isBefore(end);
+
+        // A window that wraps past midnight belongs to the day it started on.
+        final LocalDate window = start.isBefore(end) || !time.isBefore(start) ? now.toLocalDate() : now.toLocalDate().minusDays(1);
+
+        if (!inside || window.equals(this.maintainedOn)) {
+            return;
+        }
+
+        final Optional<FileStats> stats = this.storage.getFileStats();
+
+        if (!stats.isPresent()) {
+            return;
+        }
+
+        if (stats.get().getFillRate() >= this.config.getMaintenanceMinFillRate()) {
+            this.maintainedOn = window;
+            this.logger.info("Storage does not need compacting, it is " + stats.get() + ".");
+            return;
+        }
+
+        this.storage.compact(this.config.getMaintenanceBudget(), 30, TimeUnit.SECONDS).ifPresent(compaction -> {
+            this.maintainedOn = window;
+            this.compaction = compaction;
+            this.logger.info("Compacted storage from " + compaction.getBefore() + " to " + compaction.getAfter() + " in "
+                + compaction.getElapsed().toMillis() + "ms.");
+        });
+    }
+
+    /**
+     * Starts an alt audit of the whole registry in the background. Empty if
+     * another audit is still running.
+     */
+    public synchronized Optional<AltAudit> startAudit() {
+        if (this.audit != null && this.audit.isRunning()) {
+            return Optional.empty();
+        }
+
+        final Path report = this.parentPath.resolve("audits").resolve("audit-" + AUDIT_FORMATTER.format(LocalDateTime.now()) + ".txt");
+        final AltAudit audit = new AltAudit(report, this.config.getAliasFanoutThreshold(), uuid -> Sponge.getServiceManager()
+            .provide(UserStorageService.class)
+            .flatMap(service -> service.get(uuid))
+            .map(User::getName));
+
+        this.audit = audit;
+
+        Sponge.getScheduler().createAsyncExecutor(this).execute(() -> {
+            try {
+                if (audit.run(this.storage) == AltAudit.Phase.DONE) {
+                    this.logger.info("Wrote an alt audit of " + audit.getClusterCount() + " clusters to " + this.parentPath.relativize(report) + ".");
+                }
+            } catch (IOException e) {
+                this.logger.error("Failed to write an alt audit.");
+                e.printStackTrace();
+            }
+        });
+
+        return Optional.of(audit);
+    }
+
+    private void registerCommands() {
+        final Map<List<String>, CommandSpec> children = new HashMap<>();
+
+        children.put(Lists.newArrayList("help", "helpme", "?"), CommandSpec.builder()
+            .description(Text.of("Displays command information for IPLog."))
+            .permission("iplog.viewer.help")
+            .executor(new HelpCommand())
+            .build());
+
+        children.put(Lists.newArrayList("add", "plus", "create", "put"), CommandSpec.builder()
+            .description(Text.of("Creates a connect between the specified player and IP in the registry."))
+            .permission("iplog.admin.add")
+            .arguments(
+                GenericArguments.optional(GenericArguments.onlyOne(GenericArguments.user(Text.of("player")))),
+                GenericArguments.optional(GenericArguments.onlyOne(new IpElement(Text.of("ip")))))
+            .executor(new AddCommand())
+            .build());
+
+        children.put(Lists.newArrayList("purge", "remove", "delete"), CommandSpec.builder()
+            .description(Text.of("Removes a connection between the specified player and IP in the registry."))
+            .permission("iplog.admin.purge")
+            .arguments(
+                GenericArguments.optional(GenericArguments.onlyOne(GenericArguments.user(Text.of("player")))),
+                GenericArguments.optional(GenericArguments.onlyOne(new IpElement(Text.of("ip")))))
+            .executor(new PurgeCommand())
+            .build());
+
+        children.put(Lists.newArrayList("alias", "alts", "alternates", "related"), CommandSpec.builder()
+            .description(Text.of("Dispays all players associated with the specified player in the registry."))
+            .permission("iplog.viewer.alias")
+            .arguments(GenericArguments.flags()
+                .valueFlag(GenericArguments.integer(Text.of("min")), "-min")
+                .buildWith(GenericArguments.optional(GenericArguments.onlyOne(GenericArguments.user(Text.of("player"))))))
+            .executor(new AliasCommand())
+            .build());
+
+        children.put(Lists.newArrayList("lookup", "look", "search"), CommandSpec.builder()
+            .description(Text.of("Displays all IPs associated with a player or all players associated with an IP."))
+            .permission("iplog.viewer.lookup")
+            .arguments(
+                GenericArguments.optionalWeak(GenericArguments.onlyOne(GenericArguments.user(Text.of("player")))),
+                GenericArguments.optionalWeak(GenericArguments.onlyOne(new IpElement(Text.of("ip")))))
+            .executor(new LookupCommand())
+            .build());
+
+        children.put(Lists.newArrayList("history", "past", "dates"), CommandSpec.builder()
+            .description(Text.of("Displays the login history of an IP or a player."))
+            .permission("iplog.viewer.history")
+            .arguments(GenericArguments.flags()
+                .valueFlag(new TimeElement(Text.of("since")), "-since")
+                .valueFlag(new TimeElement(Text.of("until")), "-until")
+                .buildWith(GenericArguments.seq(
+                    GenericArguments.optionalWeak(GenericArguments.onlyOne(GenericArguments.user(Text.of("player")))),
+                    GenericArguments.optionalWeak(GenericArguments.onlyOne(new IpElement(Text.of("ip")))))))
+            .executor(new HistoryCommand())
+            .build());
+
+        children.put(Lists.newArrayList("activity", "logins", "window"), CommandSpec.builder()
+            .description(Text.of("Displays every login within a time window."))
+            .permission("iplog.viewer.activity")
+            .arguments(
+                new TimeElement(Text.of("from")),
+                GenericArguments.optional(new TimeElement(Text.of("to"))))
+            .executor(new ActivityCommand())
+            .build());
+
+        children.put(Lists.newArrayList("playtime", "sessions", "time"), CommandSpec.builder()
+            .description(Text.of("Displays the playtime of a player on each IP or of each player on an IP."))
+            .permission("iplog.viewer.playtime")
+            .arguments(
+                GenericArguments.optionalWeak(GenericArguments.onlyOne(GenericArguments.user(Text.of("player")))),
+                GenericArguments.optionalWeak(GenericArguments.onlyOne(new IpElement(Text.of("ip")))),
+                GenericArguments.optional(GenericArguments.onlyOne(GenericArguments.integer(Text.of("days")))))
+            .executor(new PlaytimeCommand())
+            .build());
+
+        children.put(Lists.newArrayList("name", "names"), CommandSpec.builder()
+            .description(Text.of("Displays the players who have used a name containing the text."))
+            .permission("iplog.viewer.name")
+            .arguments(GenericArguments.onlyOne(GenericArguments.string(Text.of("name"))))
+            .executor(new NameCommand())
+            .build());
+
+        children.put(Lists.newArrayList("online", "shared"), CommandSpec.builder()
+            .description(Text.of("Displays the online players who share an IP."))
+            .permission("iplog.viewer.online")
+            .executor(new OnlineCommand())
+            .build());
+
+        children.put(Lists.newArrayList("backup", "snapshot"), CommandSpec.builder()
+            .description(Text.of("Backs up storage without stopping the server."))
+            .permission("iplog.admin.backup")
+            .executor(new BackupCommand())
+            .build());
+
+        final Map<String, String> actions = new HashMap<>();
+        actions.put("start", "start");
+        actions.put("status", "status");
+        actions.put("cancel", "cancel");
+
+        children.put(Lists.newArrayList("audit", "clusters"), CommandSpec.builder()
+            .description(Text.of("Writes a report of every cluster of alts in the registry."))
+            .permission("iplog.admin.audit")
+            .arguments(GenericArguments.optional(GenericArguments.choices(Text.of("action"), actions)))
+            .executor(new AuditCommand())
+            .build());
+
+        children.put(Lists.newArrayList("metrics", "stats"), CommandSpec.builder()
+            .description(Text.of("Displays storage health and login check latencies."))
+            .permission("iplog.admin.metrics")
+            .executor(new MetricsCommand())
+            .build());
+
+        final Map<String, Integer> windows = new HashMap<>();
+        windows.put("day", 1);
+        windows.put("today", 1);
+        windows.put("week", ActivitySketches.RETENTION_DAYS);
+
+        children.put(Lists.newArrayList("top", "report"), CommandSpec.builder()
+            .description(Text.of("Displays the IPs used by the most accounts today or this week."))
+            .permission("iplog.viewer.top")
+            .arguments(GenericArguments.optional(GenericArguments.choices(Text.of("window"), windows)))
+            .child(CommandSpec.builder()
+                .description(Text.of("Displays how many distinct IPs and players joined today or this week."))
+                .permission("iplog.viewer.top")
+                .arguments(GenericArguments.optional(GenericArguments.choices(Text.of("window"), windows)))
+                .executor(new UniqueCommand())
+                .build(), "unique", "count", "distinct")
+            .executor(new TopCommand())
+            .build());
+
+        Sponge.getCommandManager().register(this, CommandSpec.builder()
+            .description(Text.of("Displays basic information about the IPLog plugin."))
+            .permission("iplog.viewer")
+            .executor(new BaseCommand())
+            .children(children)
+            .build(), "ip", "iplog", "ipregister");
+
+        this.logger.info("Commands have been successfully registered.");
+    }
+
+    public Path getParentPath() {
+        return this.parentPath;
+    }
+
+    public Config getConfig() {
+        return this.config;
+    }
+
+    public Storage getStorage() {
+        return this.storage;
+    }
+
+    public AddressIndex getAddressIndex() {
+        return this.addressIndex;
+    }
+
+    public NameIndex getNameIndex() {
+        return this.nameIndex;
+    }
+
+    public ActivitySketches getSketches() {
+        return this.sketches;
+    }
+
+    public AltScores getAltScores() {
+        return this.altScores;
+    }
+
+    public SessionTracker getSessions() {
+        return this.sessions;
+    }
+
+    public Backups getBackups() {
+        return this.backups;
+    }
+
+    public Optional<AltAudit> getAudit() {
+        return Optional.ofNullable(this.audit);
+    }
+
+    public Optional<EvasionCheck> getEvasionCheck() {
+        return Optional.ofNullable(this.evasionCheck);
+    }
+
+    public Optional<Compaction> getLastCompaction() {
+        return Optional.ofNullable(this.compaction);
+    }
+
+    public Optional<BurstDetector> getBurstDetector() {
+        return Optional.ofNullable(this.burstDetector);
+    }
+
+    public Optional<IpRangeDatabase> getIpDatabase() {
+        return Optional.ofNullable(this.ipDatabase);
+    }
+
+    public Logger getLogger() {
+        return this.logger;
+    }
+
+    public PluginContainer getPluginContainer() {
+        return this.pluginContainer;
+    }
+
+    public static IPLog getPlugin() {
+        return plugin;
+    }
+
+}
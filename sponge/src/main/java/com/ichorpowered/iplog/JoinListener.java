@@ -0,0 +1,112 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog;
+
+import com.ichorpowered.iplog.api.event.AccountBurstEvent;
+import com.ichorpowered.iplog.burst.Burst;
+import com.ichorpowered.iplog.burst.BurstDetector;
+import com.ichorpowered.iplog.index.NameIndex;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.event.Listener;
+import org.spongepowered.api.event.filter.cause.Root;
+import org.spongepowered.api.event.network.ClientConnectionEvent;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.channel.MessageChannel;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class JoinListener {
+
+    @Listener
+    public void onPlayerJoin(ClientConnectionEvent.Join event, @Root Player player) {
+        if (!player.hasPermission("iplog.bypasslogging")) {
+            final Storage storage = IPLog.getPlugin().getStorage();
+
+            final InetAddress ip = player.getConnection().getAddress().getAddress();
+            final UUID uuid = player.getUniqueId();
+            final LocalDateTime time = LocalDateTime.now();
+
+            // Whether the account is new has to be known before its connection reaches the index.
+            final Optional<BurstDetector> detector = IPLog.getPlugin().getBurstDetector();
+            final boolean firstSeen = detector.isPresent() && IPLog.getPlugin().getAddressIndex().getAddresses(uuid).isEmpty();
+
+            storage.recordConnection(ip, uuid, time);
+
+            // A name only enters the index once it is stored, so one that failed to store is tried again on the next join.
+            final NameIndex names = IPLog.getPlugin().getNameIndex();
+
+            if (!names.contains(uuid, player.getName()) && storage.recordName(uuid, player.getName(), time)) {
+                names.add(uuid, player.getName());
+            }
+
+            IPLog.getPlugin().getSketches().record(ip, uuid, time);
+            IPLog.getPlugin().getSessions().open(uuid, ip, time);
+
+            if (firstSeen) {
+                for (Burst burst : detector.get().record(ip, uuid, System.currentTimeMillis())) {
+                    alert(burst);
+                }
+            }
+        }
+    }
+
+    private static void alert(Burst burst) {
+        Sponge.getEventManager().post(new AccountBurstEvent(burst, Sponge.getCauseStackManager().getCurrentCause()));
+
+        final Optional<UserStorageService> users = Sponge.getServiceManager().provide(UserStorageService.class);
+        final String names = burst.getAccounts().stream()
+            .map(uuid -> users.flatMap(service -> service.get(uuid)).map(User::getName).orElse(uuid.toString()))
+            .collect(Collectors.joining(", "));
+
+        final Text network = burst.getScope() == Burst.Scope.ADDRESS
+            ? Text.of(TextColors.GREEN, burst.getNetwork()).toBuilder()
+                .onHover(TextActions.showText(Text.of(TextColors.GRAY, "Click to look up every user of this IP.")))
+                .onClick(TextActions.runCommand("/ip lookup " + burst.getNetwork()))
+                .build()
+            : Text.of(TextColors.GREEN, burst.getNetwork());
+
+        IPLog.getPlugin().getLogger().warn(burst.getAccounts().size() + " new accounts joined from " + burst.getNetwork() + " within "
+            + burst.getSpan().getSeconds() + " seconds: " + names);
+
+        MessageChannel.permission("iplog.notify").send(Text.of(TextColors.YELLOW, burst.getAccounts().size(), TextColors.GRAY,
+            " new accounts joined from ", network, TextColors.GRAY, " within ", TextColors.YELLOW, minutes(burst.getSpan().getSeconds()),
+            TextColors.GRAY, ": ", TextColors.DARK_GREEN, names));
+    }
+
+    private static String minutes(long seconds) {
+        return seconds < 60 ? seconds + "s" : (seconds / 60) + "m " + (seconds % 60) + "s";
+    }
+
+}
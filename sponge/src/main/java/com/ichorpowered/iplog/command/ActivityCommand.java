@@ -0,0 +1,102 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.storage.Login;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ActivityCommand implements CommandExecutor {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final int LIMIT = 500;
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final LocalDateTime from = args.<LocalDateTime>getOne("from")
+                .orElseThrow(() -> new CommandException(Text.of(TextColors.RED, "You must specify when the window starts.")));
+        final LocalDateTime to = args.<LocalDateTime>getOne("to").orElseGet(LocalDateTime::now);
+
+        if (to.isBefore(from)) {
+            throw new CommandException(Text.of(TextColors.RED, "The window must end after it starts."));
+        }
+
+        Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
+            final List<Login> logins = IPLog.getPlugin().getStorage().getLogins(from, to, LIMIT);
+            Degraded.warn(src);
+
+            if (logins.isEmpty()) {
+                src.sendMessage(Text.of(TextColors.RED, "Nobody logged in within this time window."));
+                return;
+            }
+
+            Sponge.getScheduler().createSyncExecutor(IPLog.getPlugin()).execute(() -> {
+                final UserStorageService userStorageService = Sponge.getServiceManager().provide(UserStorageService.class).get();
+                final List<Text> contents = new ArrayList<>();
+
+                for (Login login : logins) {
+                    userStorageService.get(login.getUuid()).ifPresent(user -> contents.add(Text.of(TextColors.GRAY,
+                            TIME_FORMATTER.format(login.getTime()), "    ", TextColors.DARK_GREEN, user.getName(), "    ",
+                            Text.of(TextColors.GREEN, login.getIp()).toBuilder()
+                                    .onClick(TextActions.runCommand("/ip lookup " + login.getIp()))
+                                    .onHover(TextActions.showText(Text.of(TextColors.GREEN, "Look up this IP address.")))
+                                    .build(),
+                            AddressColumns.of(login.getIp()))));
+                }
+
+                if (logins.size() >= LIMIT) {
+                    contents.add(Text.of(TextColors.GRAY, "Only the latest " + LIMIT + " logins are shown, narrow the window to see more."));
+                }
+
+                Sponge.getServiceManager().provide(PaginationService.class).get().builder()
+                        .title(Text.of(TextColors.DARK_GREEN, "Logins From ", TextColors.GREEN, TIME_FORMATTER.format(from),
+                                TextColors.DARK_GREEN, " To ", TextColors.GREEN, TIME_FORMATTER.format(to)))
+                        .contents(contents)
+                        .linesPerPage(14)
+                        .padding(Text.of(TextColors.GRAY, "="))
+                        .sendTo(src);
+            });
+        });
+
+        return CommandResult.success();
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.enrichment.IpInfo;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Optional;
+
+final class AddressColumns {
+
+    private static final Text HOSTING = Text.of(TextColors.RED, "  [hosting]");
+
+    private AddressColumns() {
+    }
+
+    static Text of(String address) {
+        try {
+            return of(InetAddress.getByName(address));
+        } catch (UnknownHostException e) {
+            return Text.EMPTY;
+        }
+    }
+
+    static Text of(InetAddress address) {
+        final Optional<IpInfo> optionalInfo = IPLog.getPlugin().getIpDatabase().flatMap(database -> database.lookup(address));
+
+        if (!optionalInfo.isPresent()) {
+            return Text.EMPTY;
+        }
+
+        final IpInfo info = optionalInfo.get();
+
+        return Text.of(TextColors.GRAY, "  AS", info.getAsn(), "  ", info.getCountry(), info.isHosting() ? HOSTING : Text.EMPTY);
+    }
+
+}
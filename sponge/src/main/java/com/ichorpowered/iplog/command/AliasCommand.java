@@ -36,8 +36,12 @@ import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.service.pagination.PaginationService;
 import org.spongepowered.api.service.user.UserStorageService;
 import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
 import org.spongepowered.api.text.format.TextColors;
 
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
@@ -54,32 +58,51 @@ public class AliasCommand implements CommandExecutor {
         }
 
         final User user = optionalUser.get();
+        final double min = args.<Integer>getOne("min").orElse(0) / 100.0;
 
         Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
-            final Set<UUID> users = IPLog.getPlugin().getStorage().getAliases(user.getUniqueId());
+            final int threshold = IPLog.getPlugin().getConfig().getAliasFanoutThreshold();
+            final Set<UUID> users = IPLog.getPlugin().getStorage().getAliases(user.getUniqueId(), threshold);
+            final Map<String, Integer> shared = IPLog.getPlugin().getStorage().getSharedAddresses(user.getUniqueId(), threshold);
+            Degraded.warn(src);
             if (src instanceof User) {
                 UUID sender = ((User) src).getUniqueId();
                 if (sender.equals(user.getUniqueId())) {
                     users.remove(sender);
                 }
             }
-            if (users.size() == 0) {
+
+            final Map<UUID, Double> scores = IPLog.getPlugin().getAltScores().getConfidence(user.getUniqueId(), users);
+            users.removeIf(uuid -> scores.get(uuid) < min);
+
+            if (users.size() == 0 && shared.isEmpty()) {
                 src.sendMessage(Text.of(TextColors.RED, "There are no aliases associated with the specified user."));
                 return;
             }
 
             Sponge.getScheduler().createSyncExecutor(IPLog.getPlugin()).execute(() -> {
                 final UserStorageService userStorageService = Sponge.getServiceManager().provide(UserStorageService.class).get();
+                final List<Text> contents = users.stream()
+                        .sorted(Comparator.comparing(scores::get).reversed())
+                        .map(uuid -> userStorageService.get(uuid).map(alias -> Text.builder()
+                                .append(Text.of(TextColors.DARK_GREEN, alias.getName(), TextColors.GRAY, " (",
+                                        TextColors.YELLOW, Math.round(scores.get(uuid) * 100), TextColors.GRAY, "%)"))
+                                .onHover(TextActions.showText(Text.of(TextColors.GRAY, "How often they joined from the same IP at the same time,"
+                                        + " counting IPs used by fewer accounts more.")))
+                                .build()))
+                        .filter(Optional::isPresent)
+                        .map(Optional::get)
+                        .collect(Collectors.toList());
+
+                shared.forEach((ip, accounts) -> contents.add(Text.builder()
+                        .append(Text.of(TextColors.GRAY, "Skipped shared IP ", TextColors.YELLOW, ip, TextColors.GRAY, " (", accounts, " accounts)"))
+                        .onHover(TextActions.showText(Text.of(TextColors.GRAY, "Click to look up every user of this IP.")))
+                        .onClick(TextActions.runCommand("/ip lookup " + ip))
+                        .build()));
+
                 Sponge.getServiceManager().provide(PaginationService.class).get().builder()
                         .title(Text.of(TextColors.DARK_GREEN, "Aliases of ", TextColors.GREEN, user.getName()))
-                        .contents(users.stream()
-                                .map(userStorageService::get)
-                                .filter(Optional::isPresent)
-                                .map(Optional::get)
-                                .map(User::getName)
-                                .map(Text::of)
-                                .map(username -> Text.of(TextColors.DARK_GREEN, username))
-                                .collect(Collectors.toList()))
+                        .contents(contents)
                         .linesPerPage(14)
                         .padding(Text.of(TextColors.GRAY, "="))
                         .sendTo(src);
@@ -0,0 +1,110 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.audit.AltAudit;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class AuditCommand implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final Optional<AltAudit> current = IPLog.getPlugin().getAudit();
+        final boolean running = current.isPresent() && current.get().isRunning();
+        final String action = args.<String>getOne("action").orElse(running ? "status" : "start");
+
+        if (action.equals("status")) {
+            if (!current.isPresent()) {
+                throw new CommandException(Text.of(TextColors.RED, "No audit has been started since the server started."));
+            }
+
+            src.sendMessage(progress(current.get()));
+
+            return CommandResult.success();
+        }
+
+        if (action.equals("cancel")) {
+            if (!running) {
+                throw new CommandException(Text.of(TextColors.RED, "No audit is running."));
+            }
+
+            current.get().cancel();
+            src.sendMessage(Text.of(TextColors.GRAY, "Cancelling the audit..."));
+
+            return CommandResult.success();
+        }
+
+        final AltAudit audit = IPLog.getPlugin().startAudit()
+                .orElseThrow(() -> new CommandException(Text.of(TextColors.RED, "An audit is already running, see /ip audit status.")));
+
+        src.sendMessage(Text.of(TextColors.GRAY, "Auditing every connection in the registry..."));
+
+        Sponge.getScheduler().createTaskBuilder()
+                .interval(10, TimeUnit.SECONDS)
+                .delay(10, TimeUnit.SECONDS)
+                .execute(task -> {
+                    src.sendMessage(progress(audit));
+
+                    if (!audit.isRunning()) {
+                        task.cancel();
+                    }
+                })
+                .submit(IPLog.getPlugin());
+
+        return CommandResult.success();
+    }
+
+    private static Text progress(AltAudit audit) {
+        switch (audit.getPhase()) {
+            case DONE:
+                return Text.of(TextColors.DARK_GREEN, "The audit found ", TextColors.GREEN, audit.getClusterCount(), TextColors.DARK_GREEN,
+                        " clusters of alts, see ", TextColors.GREEN, audit.getReport().getFileName(), TextColors.DARK_GREEN, ".");
+            case CANCELLED:
+                return Text.of(TextColors.GRAY, "The audit was cancelled.");
+            case FAILED:
+                return Text.of(TextColors.RED, "The audit failed, check the console for details.");
+            default:
+                final long total = Math.max(1, audit.getTotal());
+                final long percent = Math.min(100, audit.getDone() * 100 / total);
+
+                return Text.of(TextColors.DARK_GREEN, "Audit ", TextColors.GREEN, audit.getPhase().name().toLowerCase(Locale.ROOT), TextColors.DARK_GREEN,
+                        ": " + percent + "% (" + audit.getDone() + " of " + audit.getTotal() + ")");
+        }
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+public class BackupCommand implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        if (IPLog.getPlugin().getBackups().isRunning()) {
+            throw new CommandException(Text.of(TextColors.RED, "A backup is already running."));
+        }
+
+        src.sendMessage(Text.of(TextColors.GRAY, "Backing up storage..."));
+
+        Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
+            final long start = System.currentTimeMillis();
+            final Optional<Path> backup = IPLog.getPlugin().backup();
+
+            if (!backup.isPresent()) {
+                src.sendMessage(Text.of(TextColors.RED, "The backup failed, check the console for details."));
+                return;
+            }
+
+            long size;
+
+            try {
+                size = Files.size(backup.get());
+            } catch (IOException e) {
+                size = 0;
+            }
+
+            src.sendMessage(Text.of(TextColors.DARK_GREEN, "Backed up storage to ", TextColors.GREEN, backup.get().getFileName(),
+                    TextColors.GRAY, " (" + size / 1024 + " KiB in " + (System.currentTimeMillis() - start) + "ms)."));
+        });
+
+        return CommandResult.success();
+    }
+
+}
@@ -64,8 +64,8 @@ public class HelpCommand implements CommandExecutor {
                 Text.of("IPLog v0.2.0")));
         contents.add(formatHelpText("/ip help", "Displays this page, giving information about IPLog commands.",
                 Text.of("Click here for IPLog help")));
-        contents.add(formatHelpText("/ip alias [player]", "Shows all possible players associated with this player.",
-                Text.of("Good for finding alternate accounts")));
+        contents.add(formatHelpText("/ip alias [player] [--min <score>]", "Shows all possible players associated with this player,"
+                + " most likely first.", Text.of("Scores come from joining from the same IP at the same time")));
         contents.add(formatHelpText("/ip lookup [player]", "Lists all the IPs associated with the specified player.",
                 Text.of("Can also be used with IPs")));
         contents.add(formatHelpText("/ip lookup [ip]", "Lists all the players associated with the specified IP.",
@@ -74,6 +74,26 @@ public class HelpCommand implements CommandExecutor {
                 Text.of("Can also be used with IPs")));
         contents.add(formatHelpText("/ip history [ip]", "Displays all users associated with an IP and their last date of login",
                 Text.of("Can also be used with users")));
+        contents.add(formatHelpText("/ip history [player|ip] --since <time> --until <time>", "Limits the history to logins within a time window",
+                Text.of("Times look like 2018-05-03T20:00, 20:00 or 6h")));
+        contents.add(formatHelpText("/ip activity <from> [to]", "Lists every login within a time window",
+                Text.of("Times look like 2018-05-03T20:00, 20:00 or 6h")));
+        contents.add(formatHelpText("/ip top [day|week]", "Lists the IPs used by the most accounts",
+                Text.of("Counts are estimates kept for the last week")));
+        contents.add(formatHelpText("/ip top unique [day|week]", "Displays how many distinct IPs and players joined",
+                Text.of("Counts are estimates kept for the last week")));
+        contents.add(formatHelpText("/ip playtime [player|ip] [days]", "Displays time played per IP or per player",
+                Text.of("Defaults to the last 7 days")));
+        contents.add(formatHelpText("/ip name <partial>", "Lists players who have used a name containing the text",
+                Text.of("Shorter than 3 characters matches the start of names")));
+        contents.add(formatHelpText("/ip online", "Lists online players who joined from the same IP",
+                Text.of("Does not touch storage")));
+        contents.add(formatHelpText("/ip backup", "Backs up storage while the server keeps running",
+                Text.of("Old backups are rotated out")));
+        contents.add(formatHelpText("/ip audit [start|status|cancel]", "Writes a report of every cluster of alts",
+                Text.of("Reports are written to the audits folder")));
+        contents.add(formatHelpText("/ip metrics", "Displays storage health and login check latencies",
+                Text.of("Login checks are enabled in the config")));
         contents.add(formatHelpText("/ip add [player] [ip]", "Adds a connection between a player and an IP",
                 Text.of("You must specify both")));
         contents.add(formatHelpText("/ip purge [player] [ip]", "Removes the connection between a player and an IP",
@@ -54,19 +54,32 @@ public class HistoryCommand implements CommandExecutor {
             .onHover(TextActions.showText(Text.of(TextColors.RED, "Purges this IP-User connection."))).build();
 
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
 
     @Override
     public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
         final Optional<User> optionalUser = args.getOne("player");
         final Optional<InetAddress> optionalAddress = args.getOne("ip");
+        final Optional<LocalDateTime> since = args.getOne("since");
+        final Optional<LocalDateTime> until = args.getOne("until");
+        final boolean windowed = since.isPresent() || until.isPresent();
+        final LocalDateTime from = since.orElse(EPOCH);
+        final LocalDateTime to = until.orElseGet(LocalDateTime::now);
 
         if (optionalUser.isPresent() && optionalAddress.isPresent()) {
             throw new CommandException(Text.of(TextColors.RED, "You must specify either an IP address or player, but not both."));
         }
 
+        if (to.isBefore(from)) {
+            throw new CommandException(Text.of(TextColors.RED, "The window must end after it starts."));
+        }
+
         if (optionalAddress.isPresent()) {
             Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
-                final Map<UUID, LocalDateTime> users = IPLog.getPlugin().getStorage().getPlayersAndTime(optionalAddress.get());
+                final Map<UUID, LocalDateTime> users = windowed
+                        ? IPLog.getPlugin().getStorage().getPlayersAndTime(optionalAddress.get(), from, to)
+                        : IPLog.getPlugin().getStorage().getPlayersAndTime(optionalAddress.get());
+                Degraded.warn(src);
 
                 if(users.isEmpty()) {
                     src.sendMessage(Text.of(TextColors.RED, "There are no players associated with this IP address."));
@@ -82,7 +95,8 @@ public class HistoryCommand implements CommandExecutor {
                                     PURGE.toBuilder().onClick(TextActions.suggestCommand("/ip purge " + user.getName() + " " + optionalAddress.get().getHostAddress()))))));
 
                     Sponge.getServiceManager().provide(PaginationService.class).get().builder()
-                            .title(Text.of(TextColors.DARK_GREEN, "User History Associated With ", TextColors.GREEN, optionalAddress.get().getHostAddress()))
+                            .title(Text.of(TextColors.DARK_GREEN, "User History Associated With ", TextColors.GREEN, optionalAddress.get().getHostAddress(),
+                                    AddressColumns.of(optionalAddress.get())))
                             .contents(contents)
                             .linesPerPage(14)
                             .padding(Text.of(TextColors.GRAY, "="))
@@ -91,7 +105,10 @@ public class HistoryCommand implements CommandExecutor {
             });
         } else if (optionalUser.isPresent()) {
             Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
-                final Map<String, LocalDateTime> addresses = IPLog.getPlugin().getStorage().getAddressesAndTime(optionalUser.get().getUniqueId());
+                final Map<String, LocalDateTime> addresses = windowed
+                        ? IPLog.getPlugin().getStorage().getAddressesAndTime(optionalUser.get().getUniqueId(), from, to)
+                        : IPLog.getPlugin().getStorage().getAddressesAndTime(optionalUser.get().getUniqueId());
+                Degraded.warn(src);
 
                 if(addresses.isEmpty()) {
                     src.sendMessage(Text.of(TextColors.RED, "There are no IP addresses associated with this user."));
@@ -100,7 +117,7 @@ public class HistoryCommand implements CommandExecutor {
 
                 final List<Text> contents = new ArrayList<>();
 
-                addresses.forEach((key, value) -> contents.add(Text.of(TextColors.DARK_GREEN, key, "    ", TextColors.GRAY,
+                addresses.forEach((key, value) -> contents.add(Text.of(TextColors.DARK_GREEN, key, AddressColumns.of(key), "    ", TextColors.GRAY,
                         TIME_FORMATTER.format(value), "          ",
                         PURGE.toBuilder().onClick(TextActions.suggestCommand("/ip purge " + optionalUser.get().getName() + " " + key)))));
 
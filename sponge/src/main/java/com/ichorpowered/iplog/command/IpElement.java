@@ -25,11 +25,14 @@
 
 package com.ichorpowered.iplog.command;
 
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.index.AddressIndex;
 import org.spongepowered.api.command.CommandSource;
 import org.spongepowered.api.command.args.ArgumentParseException;
 import org.spongepowered.api.command.args.CommandArgs;
 import org.spongepowered.api.command.args.CommandContext;
 import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.entity.living.player.User;
 import org.spongepowered.api.text.LiteralText;
 import org.spongepowered.api.text.Text;
 import org.spongepowered.api.text.format.TextColors;
@@ -38,11 +41,13 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 public class IpElement extends CommandElement {
 
     private static Text IP = LiteralText.of("<ip address>");
     private static List<String> EMPTY_LIST = new ArrayList<>();
+    private static final int COMPLETIONS = 20;
 
     public IpElement(Text key) {
         super(key);
@@ -63,7 +68,20 @@ public class IpElement extends CommandElement {
 
     @Override
     public List<String> complete(CommandSource src, CommandArgs args, CommandContext context) {
-        return EMPTY_LIST;
+        final AddressIndex index = IPLog.getPlugin().getAddressIndex();
+
+        if (index == null) {
+            return EMPTY_LIST;
+        }
+
+        final String prefix = args.nextIfPresent().orElse("");
+        final Optional<User> optionalUser = context.getOne("player");
+
+        if (optionalUser.isPresent()) {
+            return index.complete(prefix, optionalUser.get().getUniqueId(), COMPLETIONS);
+        }
+
+        return index.complete(prefix, COMPLETIONS);
     }
 
     @Override
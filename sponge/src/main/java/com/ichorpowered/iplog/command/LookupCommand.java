@@ -58,13 +58,15 @@ public class LookupCommand implements CommandExecutor {
         if (optionalAddress.isPresent()) {
             Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
                 final Set<UUID> users = IPLog.getPlugin().getStorage().getPlayers(optionalAddress.get());
+                Degraded.warn(src);
                 if (users.isEmpty()) {
                     src.sendMessage(Text.of(TextColors.RED, "There are no users associated with this IP address."));
                     return;
                 }
                 final UserStorageService userStorageService = Sponge.getServiceManager().provide(UserStorageService.class).get();
                 Sponge.getServiceManager().provide(PaginationService.class).ifPresent(p -> p.builder()
-                        .title(Text.of(TextColors.DARK_GREEN, "Users Associated With ", TextColors.GREEN, optionalAddress.get().getHostAddress()))
+                        .title(Text.of(TextColors.DARK_GREEN, "Users Associated With ", TextColors.GREEN, optionalAddress.get().getHostAddress(),
+                                AddressColumns.of(optionalAddress.get())))
                         .contents(users.stream()
                                 .map(userStorageService::get)
                                 .filter(Optional::isPresent)
@@ -80,6 +82,7 @@ public class LookupCommand implements CommandExecutor {
         } else if (optionalUser.isPresent()) {
             Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
                 final Set<String> ips = IPLog.getPlugin().getStorage().getAddresses(optionalUser.get().getUniqueId());
+                Degraded.warn(src);
                 if(ips.isEmpty()) {
                     src.sendMessage(Text.of(TextColors.RED, "There are no IP addresses associated with this user."));
                     return;
@@ -87,7 +90,7 @@ public class LookupCommand implements CommandExecutor {
 
                 Sponge.getServiceManager().provide(PaginationService.class).get().builder()
                         .title(Text.of(TextColors.DARK_GREEN, "IPs Associated With ", TextColors.GREEN, optionalUser.get().getName()))
-                        .contents(ips.stream().map(ip -> Text.of(TextColors.DARK_GREEN, ip)).collect(Collectors.toList()))
+                        .contents(ips.stream().map(ip -> Text.of(TextColors.DARK_GREEN, ip, AddressColumns.of(ip))).collect(Collectors.toList()))
                         .linesPerPage(14)
                         .padding(Text.of(TextColors.GRAY, "="))
                         .sendTo(src);
@@ -0,0 +1,121 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.Storage;
+import com.ichorpowered.iplog.api.ChangeSubscription;
+import com.ichorpowered.iplog.auth.EvasionCheck;
+import com.ichorpowered.iplog.metrics.LatencyHistogram;
+import com.ichorpowered.iplog.storage.Lane;
+import com.ichorpowered.iplog.storage.Shard;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+public class MetricsCommand implements CommandExecutor {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final Storage storage = IPLog.getPlugin().getStorage();
+        final Optional<EvasionCheck> optionalCheck = IPLog.getPlugin().getEvasionCheck();
+
+        src.sendMessage(Text.of(TextColors.DARK_GREEN, "Storage:", Text.NEW_LINE,
+                TextColors.GRAY, "Degraded: ", TextColors.YELLOW, storage.isDegraded(), Text.NEW_LINE,
+                TextColors.GRAY, "Failed calls: ", TextColors.YELLOW, storage.getFailureCount(), Text.NEW_LINE,
+                TextColors.GRAY, "Write conflicts: ", TextColors.YELLOW, storage.getConflictCount(), Text.NEW_LINE,
+                TextColors.GRAY, "Reads timed out: ", TextColors.YELLOW, storage.getTimeoutCount()));
+
+        final List<Shard> shards = storage.getShards();
+
+        for (int i = 0; i < shards.size(); i++) {
+            final String prefix = shards.size() == 1 ? "" : "Shard " + i + " ";
+
+            src.sendMessage(Text.of(lane(prefix + (prefix.isEmpty() ? "Write" : "write") + " lane", shards.get(i).getWriteLane()), Text.NEW_LINE,
+                    lane(prefix + (prefix.isEmpty() ? "Read" : "read") + " lane", shards.get(i).getReadLane())));
+        }
+
+        final List<? extends ChangeSubscription> subscriptions = storage.getChangeStream().getSubscriptions();
+
+        if (!subscriptions.isEmpty()) {
+            src.sendMessage(Text.of(TextColors.GRAY, "Change subscribers: ", TextColors.YELLOW, subscriptions.size(), TextColors.GRAY, " (",
+                    TextColors.YELLOW, subscriptions.stream().mapToInt(ChangeSubscription::getQueued).sum(), TextColors.GRAY, " queued, ",
+                    TextColors.YELLOW, subscriptions.stream().mapToLong(ChangeSubscription::getDroppedCount).sum(), TextColors.GRAY, " dropped)"));
+        }
+
+        storage.getFileStats().ifPresent(stats -> src.sendMessage(Text.of(TextColors.GRAY, "File: ", TextColors.YELLOW, stats)));
+        IPLog.getPlugin().getLastCompaction().ifPresent(compaction -> src.sendMessage(Text.of(TextColors.GRAY, "Last compacted ",
+                TextColors.YELLOW, TIME_FORMATTER.format(compaction.getTime()), TextColors.GRAY, " from ", TextColors.YELLOW,
+                compaction.getBefore(), TextColors.GRAY, " to ", TextColors.YELLOW, compaction.getAfter(), TextColors.GRAY, " in ",
+                TextColors.YELLOW, compaction.getElapsed().toMillis() + "ms")));
+
+        if (!optionalCheck.isPresent()) {
+            src.sendMessage(Text.of(TextColors.DARK_GREEN, "Login checks: ", TextColors.GRAY, "disabled"));
+            return CommandResult.success();
+        }
+
+        final EvasionCheck check = optionalCheck.get();
+        final LatencyHistogram latency = check.getLatency();
+
+        src.sendMessage(Text.of(TextColors.DARK_GREEN, "Login checks (deadline ", millis(check.getDeadline(TimeUnit.MICROSECONDS)), "):", Text.NEW_LINE,
+                TextColors.GRAY, "Checked: ", TextColors.YELLOW, latency.getCount(), TextColors.GRAY, "  Linked: ", TextColors.YELLOW,
+                check.getLinkedCount(), TextColors.GRAY, "  Failed open: ", TextColors.YELLOW, check.getTimeoutCount(), Text.NEW_LINE,
+                TextColors.GRAY, "p50 ", TextColors.YELLOW, percentile(latency, 50), TextColors.GRAY, "  p90 ", TextColors.YELLOW, percentile(latency, 90),
+                TextColors.GRAY, "  p99 ", TextColors.YELLOW, percentile(latency, 99), TextColors.GRAY, "  p99.9 ", TextColors.YELLOW,
+                percentile(latency, 99.9), TextColors.GRAY, "  max ", TextColors.YELLOW, millis(latency.getMax(TimeUnit.MICROSECONDS))));
+
+        return CommandResult.success();
+    }
+
+    private static Text lane(String name, Lane lane) {
+        final LatencyHistogram waits = lane.getWaits();
+
+        return Text.of(TextColors.GRAY, name, " (", TextColors.YELLOW, lane.getInUse(), TextColors.GRAY, "/", TextColors.YELLOW, lane.getSize(),
+                TextColors.GRAY, " busy, ", TextColors.YELLOW, lane.getQueued(), TextColors.GRAY, " waiting, ", TextColors.YELLOW,
+                lane.getRejectedCount(), TextColors.GRAY, " gave up) wait p50 ", TextColors.YELLOW, percentile(waits, 50), TextColors.GRAY,
+                "  p99 ", TextColors.YELLOW, percentile(waits, 99), TextColors.GRAY, "  max ", TextColors.YELLOW, millis(waits.getMax(TimeUnit.MICROSECONDS)));
+    }
+
+    private static String percentile(LatencyHistogram latency, double percentile) {
+        return millis(latency.getPercentile(percentile, TimeUnit.MICROSECONDS));
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.3fms", micros / 1000.0);
+    }
+
+}
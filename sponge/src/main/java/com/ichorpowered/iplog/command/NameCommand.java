@@ -0,0 +1,90 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import com.ichorpowered.iplog.index.NameIndex;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.entity.living.player.User;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.service.user.UserStorageService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class NameCommand implements CommandExecutor {
+
+    private static final int MAX_MATCHES = 200;
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final String query = args.<String>getOne("name").get();
+
+        if (query.length() < NameIndex.MIN_QUERY) {
+            throw new CommandException(Text.of(TextColors.RED, "You must specify at least " + NameIndex.MIN_QUERY + " characters of the name."));
+        }
+
+        final List<NameIndex.Match> matches = IPLog.getPlugin().getNameIndex().search(query, MAX_MATCHES);
+
+        if (matches.isEmpty()) {
+            throw new CommandException(Text.of(TextColors.RED, "No player has used a name " + (query.length() < 3 ? "starting with " : "containing ")
+                + query + "."));
+        }
+
+        Sponge.getScheduler().createAsyncExecutor(IPLog.getPlugin()).execute(() -> {
+            final UserStorageService userStorageService = Sponge.getServiceManager().provide(UserStorageService.class).get();
+
+            Sponge.getServiceManager().provide(PaginationService.class).get().builder()
+                    .title(Text.of(TextColors.DARK_GREEN, "Players Named Like ", TextColors.GREEN, query))
+                    .contents(matches.stream().map(match -> {
+                        final String current = userStorageService.get(match.getUniqueId()).map(User::getName).orElse(match.getUniqueId().toString());
+                        final Set<String> ips = IPLog.getPlugin().getAddressIndex().getAddresses(match.getUniqueId());
+
+                        return Text.of(Text.of(TextColors.GREEN, match.getName()).toBuilder()
+                                        .onClick(TextActions.runCommand("/ip lookup " + current))
+                                        .onHover(TextActions.showText(Text.of(TextColors.GREEN, "Look up the IPs of " + current + ".")))
+                                        .build(),
+                                TextColors.GRAY, current.equalsIgnoreCase(match.getName()) ? "" : " (now " + current + ")",
+                                TextColors.GRAY, "    ", TextColors.DARK_GREEN, ips.isEmpty() ? "no IPs" : String.join(", ", ips));
+                    }).collect(Collectors.toList()))
+                    .linesPerPage(14)
+                    .padding(Text.of(TextColors.GRAY, "="))
+                    .sendTo(src);
+        });
+
+        return CommandResult.success();
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.entity.living.player.Player;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+public class OnlineCommand implements CommandExecutor {
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final Map<String, List<UUID>> shared = IPLog.getPlugin().getSessions().getSharedAddresses();
+
+        if (shared.isEmpty()) {
+            throw new CommandException(Text.of(TextColors.RED, "No online players are sharing an IP."));
+        }
+
+        final List<Text> contents = new ArrayList<>();
+
+        shared.entrySet().stream()
+                .sorted((a, b) -> a.getValue().size() != b.getValue().size()
+                        ? Integer.compare(b.getValue().size(), a.getValue().size())
+                        : a.getKey().compareTo(b.getKey()))
+                .forEach(entry -> {
+                    final String players = entry.getValue().stream()
+                            .map(uuid -> Sponge.getServer().getPlayer(uuid).map(Player::getName).orElse(uuid.toString()))
+                            .sorted(String.CASE_INSENSITIVE_ORDER)
+                            .collect(Collectors.joining(", "));
+
+                    contents.add(Text.of(Text.of(TextColors.GREEN, entry.getKey()).toBuilder()
+                                    .onClick(TextActions.runCommand("/ip lookup " + entry.getKey()))
+                                    .onHover(TextActions.showText(Text.of(TextColors.GREEN, "Look up this IP address.")))
+                                    .build(),
+                            TextColors.GRAY, " (" + entry.getValue().size() + ")    ", TextColors.DARK_GREEN, players));
+                });
+
+        Sponge.getServiceManager().provide(PaginationService.class).get().builder()
+                .title(Text.of(TextColors.DARK_GREEN, "Online Players Sharing IPs"))
+                .contents(contents)
+                .linesPerPage(14)
+                .padding(Text.of(TextColors.GRAY, "="))
+                .sendTo(src);
+
+        return CommandResult.success();
+    }
+
+}
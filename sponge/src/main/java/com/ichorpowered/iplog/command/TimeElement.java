@@ -0,0 +1,112 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.ArgumentParseException;
+import org.spongepowered.api.command.args.CommandArgs;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.args.CommandElement;
+import org.spongepowered.api.text.LiteralText;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses a point in time as {@code 2018-05-03}, {@code 2018-05-03T20:00},
+ * {@code 20:00} for today, or a relative time such as {@code 90m}, {@code 6h}
+ * or {@code 2d} ago.
+ */
+public class TimeElement extends CommandElement {
+
+    private static Text TIME = LiteralText.of("<time>");
+    private static List<String> EMPTY_LIST = new ArrayList<>();
+    private static final Pattern RELATIVE = Pattern.compile("(\\d+)([mhdw])");
+
+    public TimeElement(Text key) {
+        super(key);
+    }
+
+    @Override
+    protected Object parseValue(CommandSource source, CommandArgs args) throws ArgumentParseException {
+        if (!args.hasNext()) {
+            throw args.createError(Text.of(TextColors.RED, "You must specify a time."));
+        }
+
+        final String input = args.next();
+        final Matcher matcher = RELATIVE.matcher(input);
+
+        try {
+            if (matcher.matches()) {
+                final long amount = Long.parseLong(matcher.group(1));
+                final LocalDateTime now = LocalDateTime.now();
+
+                switch (matcher.group(2)) {
+                    case "m":
+                        return now.minusMinutes(amount);
+                    case "h":
+                        return now.minusHours(amount);
+                    case "d":
+                        return now.minusDays(amount);
+                    default:
+                        return now.minusWeeks(amount);
+                }
+            }
+
+            if (input.contains("T")) {
+                return LocalDateTime.parse(input);
+            }
+
+            if (input.contains(":")) {
+                return LocalDate.now().atTime(LocalTime.parse(input));
+            }
+
+            return LocalDate.parse(input).atStartOfDay();
+        } catch (NumberFormatException | DateTimeException e) {
+            // Relative times too far back to represent end up here as well.
+            throw args.createError(Text.of(TextColors.RED, "This is not a valid time, try 2018-05-03T20:00, 20:00 or 6h."));
+        }
+    }
+
+    @Override
+    public List<String> complete(CommandSource src, CommandArgs args, CommandContext context) {
+        return EMPTY_LIST;
+    }
+
+    @Override
+    public Text getUsage(CommandSource src) {
+        return TIME;
+    }
+
+}
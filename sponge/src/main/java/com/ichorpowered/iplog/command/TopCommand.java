@@ -0,0 +1,75 @@
+/*
+ * This file is part of IPLog, licensed under the MIT License.
+ *
+ * Copyright (c) 2018 Meronat <http://meronat.com>
+ * Copyright (c) Contributors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.ichorpowered.iplog.command;
+
+import com.ichorpowered.iplog.IPLog;
+import org.spongepowered.api.Sponge;
+import org.spongepowered.api.command.CommandException;
+import org.spongepowered.api.command.CommandResult;
+import org.spongepowered.api.command.CommandSource;
+import org.spongepowered.api.command.args.CommandContext;
+import org.spongepowered.api.command.spec.CommandExecutor;
+import org.spongepowered.api.service.pagination.PaginationService;
+import org.spongepowered.api.text.Text;
+import org.spongepowered.api.text.action.TextActions;
+import org.spongepowered.api.text.format.TextColors;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+public class TopCommand implements CommandExecutor {
+
+    private static final int LIMIT = 50;
+
+    @Override
+    public CommandResult execute(CommandSource src, CommandContext args) throws CommandException {
+        final int window = args.<Integer>getOne("window").orElse(1);
+        final List<Map.Entry<String, Long>> top = IPLog.getPlugin().getSketches().getTopAddresses(window, LIMIT);
+
+        if (top.isEmpty()) {
+            throw new CommandException(Text.of(TextColors.RED, "There has been no activity in this period."));
+        }
+
+        final String unit = window == 1 ? " accounts" : " account-days";
+
+        Sponge.getServiceManager().provide(PaginationService.class).get().builder()
+                .title(Text.of(TextColors.DARK_GREEN, "Most Used IPs ", TextColors.GREEN, window == 1 ? "Today" : "Last " + window + " Days"))
+                .contents(top.stream()
+                        .map(entry -> Text.builder()
+                                .append(Text.of(TextColors.DARK_GREEN, entry.getKey(), TextColors.GRAY, "    ~", entry.getValue(), unit))
+                                .onHover(TextActions.showText(Text.of(TextColors.GRAY, "Click to look up every user of this IP.")))
+                                .onClick(TextActions.runCommand("/ip lookup " + entry.getKey()))
+                                .build())
+                        .collect(Collectors.toList()))
+                .linesPerPage(14)
+                .padding(Text.of(TextColors.GRAY, "="))
+                .sendTo(src);
+
+        return CommandResult.success();
+    }
+
+}